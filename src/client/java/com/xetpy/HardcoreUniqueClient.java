@@ -1,10 +1,11 @@
 package com.xetpy;
 
+import com.xetpy.client.EchoPhantoms;
 import net.fabricmc.api.ClientModInitializer;
 
 public class HardcoreUniqueClient implements ClientModInitializer {
 	@Override
 	public void onInitializeClient() {
-		// This entrypoint is suitable for setting up client-specific logic, such as rendering.
+		EchoPhantoms.register();
 	}
 }
\ No newline at end of file
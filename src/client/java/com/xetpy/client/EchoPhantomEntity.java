@@ -0,0 +1,36 @@
+package com.xetpy.client;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.client.player.RemotePlayer;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.entity.player.PlayerSkin;
+
+/**
+ * Client-only player model standing in for the local player's echo. It wears the local player's own skin,
+ * which the server never needs to know about.
+ */
+final class EchoPhantomEntity extends RemotePlayer {
+	private final Component name;
+
+	EchoPhantomEntity(ClientLevel level, GameProfile profile, Component name) {
+		super(level, profile);
+		this.name = name;
+		setCustomName(name);
+		setCustomNameVisible(true);
+		setNoGravity(true);
+		setInvulnerable(true);
+	}
+
+	@Override
+	public Component getName() {
+		return name;
+	}
+
+	@Override
+	public PlayerSkin getSkin() {
+		Minecraft minecraft = Minecraft.getInstance();
+		return minecraft.player != null ? minecraft.player.getSkin() : super.getSkin();
+	}
+}
@@ -0,0 +1,92 @@
+package com.xetpy.client;
+
+import com.mojang.authlib.GameProfile;
+import com.xetpy.network.EchoPhantomPayload;
+import com.xetpy.network.EchoPhantomRemovePayload;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.ChatFormatting;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.Identifier;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.List;
+
+/**
+ * Shows and removes the echo phantom sent by the server. There is at most one at a time; it lives only in the
+ * client level it was added to and is forgotten when that level goes away.
+ */
+public final class EchoPhantoms {
+	private static final EquipmentSlot[] SLOTS = {
+		EquipmentSlot.MAINHAND, EquipmentSlot.OFFHAND, EquipmentSlot.HEAD, EquipmentSlot.CHEST, EquipmentSlot.LEGS, EquipmentSlot.FEET
+	};
+
+	// Entity ids from the server are positive, so client-only entities count down from -1 to stay clear of them.
+	private static int nextEntityId = -1;
+	private static EchoPhantomEntity current;
+	private static EchoPhantomPayload shown;
+
+	private EchoPhantoms() {
+	}
+
+	public static void register() {
+		ClientPlayNetworking.registerGlobalReceiver(EchoPhantomPayload.TYPE, (payload, context) -> show(context.client(), payload));
+		ClientPlayNetworking.registerGlobalReceiver(EchoPhantomRemovePayload.TYPE, (payload, context) -> {
+			if (shown != null && shown.echoId().equals(payload.echoId())) {
+				removeCurrent();
+			}
+		});
+		ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+			current = null;
+			shown = null;
+		});
+	}
+
+	private static void show(Minecraft client, EchoPhantomPayload payload) {
+		removeCurrent();
+		ClientLevel level = client.level;
+		if (level == null || !level.dimension().identifier().equals(payload.dimension())) {
+			return;
+		}
+		EchoPhantomEntity phantom = new EchoPhantomEntity(
+			level,
+			new GameProfile(payload.echoId(), "echo"),
+			Component.literal(payload.name()).withStyle(ChatFormatting.DARK_AQUA)
+		);
+		phantom.setId(nextEntityId--);
+		phantom.setPos(payload.x(), payload.y(), payload.z());
+		List<String> equipment = payload.equipment();
+		for (int slot = 0; slot < equipment.size(); slot++) {
+			phantom.setItemSlot(SLOTS[slot], stackFromId(equipment.get(slot)));
+		}
+		level.addEntity(phantom);
+		current = phantom;
+		shown = payload;
+	}
+
+	private static void removeCurrent() {
+		if (current == null) {
+			return;
+		}
+		if (current.level() instanceof ClientLevel level && level == Minecraft.getInstance().level) {
+			level.removeEntity(current.getId(), Entity.RemovalReason.DISCARDED);
+		}
+		current = null;
+		shown = null;
+	}
+
+	private static ItemStack stackFromId(String rawId) {
+		Identifier id = Identifier.tryParse(rawId);
+		if (id == null) {
+			return ItemStack.EMPTY;
+		}
+		Item item = BuiltInRegistries.ITEM.getValue(id);
+		return new ItemStack(item);
+	}
+}
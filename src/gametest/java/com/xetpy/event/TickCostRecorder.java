@@ -0,0 +1,107 @@
+package com.xetpy.event;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.resources.Identifier;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures time and allocation of the default phase of START_SERVER_TICK, where the mod's tick handler runs,
+ * by bracketing it with listeners in phases ordered right before and after it.
+ * Samples go into preallocated arrays so the recorder itself adds nothing to the allocation figures.
+ */
+final class TickCostRecorder {
+	private static final Identifier BEFORE = Identifier.fromNamespaceAndPath("hardcore-unique-test", "before_mod_tick");
+	private static final Identifier AFTER = Identifier.fromNamespaceAndPath("hardcore-unique-test", "after_mod_tick");
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static TickCostRecorder active;
+	private static boolean registered;
+
+	private final long[] tickNanos;
+	private final long[] allocatedBytes;
+	private int samples;
+	private long startedNanos;
+	private long startedBytes;
+
+	private TickCostRecorder(int capacity) {
+		this.tickNanos = new long[capacity];
+		this.allocatedBytes = new long[capacity];
+	}
+
+	static TickCostRecorder start(int capacity) {
+		if (!registered) {
+			registered = true;
+			ServerTickEvents.START_SERVER_TICK.addPhaseOrdering(BEFORE, Event.DEFAULT_PHASE);
+			ServerTickEvents.START_SERVER_TICK.addPhaseOrdering(Event.DEFAULT_PHASE, AFTER);
+			ServerTickEvents.START_SERVER_TICK.register(BEFORE, server -> {
+				if (active != null) {
+					active.begin();
+				}
+			});
+			ServerTickEvents.START_SERVER_TICK.register(AFTER, server -> {
+				if (active != null) {
+					active.end();
+				}
+			});
+		}
+		active = new TickCostRecorder(capacity);
+		return active;
+	}
+
+	void stop() {
+		if (active == this) {
+			active = null;
+		}
+	}
+
+	private void begin() {
+		startedBytes = THREADS.getCurrentThreadAllocatedBytes();
+		startedNanos = System.nanoTime();
+	}
+
+	private void end() {
+		long nanos = System.nanoTime() - startedNanos;
+		long bytes = THREADS.getCurrentThreadAllocatedBytes() - startedBytes;
+		if (samples < tickNanos.length) {
+			tickNanos[samples] = nanos;
+			allocatedBytes[samples] = bytes;
+			samples++;
+		}
+	}
+
+	int samples() {
+		return samples;
+	}
+
+	long[] sortedTickNanos() {
+		long[] sorted = Arrays.copyOf(tickNanos, samples);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	long[] sortedAllocatedBytes() {
+		long[] sorted = Arrays.copyOf(allocatedBytes, samples);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	static long mean(long[] values) {
+		if (values.length == 0) {
+			return 0L;
+		}
+		long total = 0L;
+		for (long value : values) {
+			total += value;
+		}
+		return total / values.length;
+	}
+
+	static long percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0) {
+			return 0L;
+		}
+		return sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1))];
+	}
+}
@@ -0,0 +1,230 @@
+package com.xetpy.event;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.xetpy.HardcoreUnique;
+import com.xetpy.config.TomorrowYouConfig;
+import com.xetpy.item.EchoCompassData;
+import com.xetpy.item.ModDataComponents;
+import com.xetpy.metrics.RollingHistogram;
+import com.xetpy.state.TomorrowYouState;
+import net.fabricmc.fabric.api.gametest.v1.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.network.DisconnectionDetails;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Puts a crowd of mock players through the whole TomorrowYou lifecycle at once: forced wake trigger, first visit
+ * with echo spawn and vanish, the tomorrow branch and compass calibration. The cost of the mod's tick is recorded
+ * for the whole run, written as a JSON report and checked against thresholds.
+ * <p>
+ * Tunables are system properties: {@code tomorrowyou.loadtest.players}, {@code tomorrowyou.loadtest.maxTickP99Micros},
+ * {@code tomorrowyou.loadtest.maxAllocatedBytesPerTick} (mean) and {@code tomorrowyou.loadtest.report}.
+ */
+public class TomorrowYouLoadTest {
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	private static final int MAX_TICKS = 3000;
+	private static final int STARTING_LEVELS = 30;
+
+	private static final int JOINING = 0;
+	private static final int STARTING = 1;
+	private static final int FIRST_VISIT = 2;
+	private static final int WAITING_TOMORROW = 3;
+	private static final int TOMORROW = 4;
+	private static final int CALIBRATING = 5;
+	private static final int DONE = 6;
+
+	@GameTest(maxTicks = MAX_TICKS)
+	public void lifecycleUnderLoad(GameTestHelper helper) {
+		int playerCount = Integer.getInteger("tomorrowyou.loadtest.players", 200);
+		long maxTickP99Nanos = Long.getLong("tomorrowyou.loadtest.maxTickP99Micros", 5_000L) * 1000L;
+		long maxAllocatedBytesPerTick = Long.getLong("tomorrowyou.loadtest.maxAllocatedBytesPerTick", 2L * 1024L * 1024L);
+		Path reportPath = Path.of(System.getProperty("tomorrowyou.loadtest.report", "reports/tomorrowyou-loadtest.json"));
+
+		TomorrowYouManager manager = HardcoreUnique.tomorrowYou();
+		// Keeps targets close to the test area and lets the compass calibrate within the run.
+		TomorrowYouConfig config = new TomorrowYouConfig();
+		config.targetMinDistance = 16;
+		config.targetMaxDistance = 48;
+		config.compassUnstableTicks = 40;
+		config.compassRewardChance = 1.0D;
+		manager.configReloader().publish(config);
+
+		ServerLevel level = helper.getLevel();
+		ServerPlayer[] players = new ServerPlayer[playerCount];
+		int[] stages = new int[playerCount];
+		for (int index = 0; index < playerCount; index++) {
+			players[index] = helper.makeMockServerPlayerInLevel();
+		}
+		TickCostRecorder recorder = TickCostRecorder.start(MAX_TICKS);
+		long startedAt = level.getGameTime();
+
+		helper.onEachTick(() -> {
+			int waitingTomorrow = 0;
+			int done = 0;
+			for (int index = 0; index < playerCount; index++) {
+				ServerPlayer player = players[index];
+				PlayerSession session = PlayerSession.of(player);
+				TomorrowYouState.PlayerTimelineData data = session == null ? null : session.data;
+				switch (stages[index]) {
+					case JOINING -> {
+						if (data != null) {
+							player.giveExperienceLevels(STARTING_LEVELS);
+							if (manager.handleWakeTrigger(player, true)) {
+								stages[index] = STARTING;
+							}
+						}
+					}
+					case STARTING -> {
+						if (data.activeEvent != null) {
+							TomorrowYouState.ActiveEvent event = data.activeEvent;
+							player.teleportTo(level, event.targetX + 0.5D, event.targetY, event.targetZ + 0.5D, Set.of(), player.getYRot(), player.getXRot(), true);
+							stages[index] = FIRST_VISIT;
+						}
+					}
+					case FIRST_VISIT -> {
+						if (data.activeEvent != null && data.activeEvent.firstVisitDone) {
+							stages[index] = WAITING_TOMORROW;
+						}
+					}
+					case TOMORROW -> {
+						if (data.activeEvent == null) {
+							if (data.history.compassesEarned() == 0) {
+								fail(helper, recorder, "Player " + index + " finished the tomorrow branch without a compass");
+								return;
+							}
+							stages[index] = CALIBRATING;
+						}
+					}
+					case CALIBRATING -> {
+						if (hasCalibratedCompass(player)) {
+							stages[index] = DONE;
+						}
+					}
+					default -> {
+					}
+				}
+				if (stages[index] == WAITING_TOMORROW) {
+					waitingTomorrow++;
+				} else if (stages[index] == DONE) {
+					done++;
+				}
+			}
+
+			// The tomorrow branch opens on the next world day, so the clock moves once everyone has met their echo.
+			if (waitingTomorrow == playerCount) {
+				level.setDayTime(level.getDayTime() + 24000L);
+				for (int index = 0; index < playerCount; index++) {
+					stages[index] = TOMORROW;
+				}
+			}
+			if (done == playerCount) {
+				finish(helper, manager, recorder, players, level.getGameTime() - startedAt, reportPath, maxTickP99Nanos, maxAllocatedBytesPerTick);
+			}
+		});
+	}
+
+	private static boolean hasCalibratedCompass(ServerPlayer player) {
+		for (ItemStack stack : player.getInventory().getNonEquipmentItems()) {
+			EchoCompassData data = stack.get(ModDataComponents.ECHO_COMPASS);
+			if (data != null && data.calibrated()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void finish(
+		GameTestHelper helper,
+		TomorrowYouManager manager,
+		TickCostRecorder recorder,
+		ServerPlayer[] players,
+		long ticks,
+		Path reportPath,
+		long maxTickP99Nanos,
+		long maxAllocatedBytesPerTick
+	) {
+		recorder.stop();
+		long[] tickNanos = recorder.sortedTickNanos();
+		long[] allocatedBytes = recorder.sortedAllocatedBytes();
+		long tickP99 = TickCostRecorder.percentile(tickNanos, 0.99D);
+		long allocatedMean = TickCostRecorder.mean(allocatedBytes);
+		boolean passed = tickP99 <= maxTickP99Nanos && allocatedMean <= maxAllocatedBytesPerTick;
+
+		JsonObject report = new JsonObject();
+		report.addProperty("players", players.length);
+		report.addProperty("ticks", ticks);
+		report.addProperty("samples", recorder.samples());
+		JsonObject tick = new JsonObject();
+		tick.addProperty("meanNanos", TickCostRecorder.mean(tickNanos));
+		tick.addProperty("p50Nanos", TickCostRecorder.percentile(tickNanos, 0.50D));
+		tick.addProperty("p99Nanos", tickP99);
+		tick.addProperty("maxNanos", TickCostRecorder.percentile(tickNanos, 1.0D));
+		report.add("tick", tick);
+		JsonObject allocation = new JsonObject();
+		allocation.addProperty("meanBytesPerTick", allocatedMean);
+		allocation.addProperty("p99BytesPerTick", TickCostRecorder.percentile(allocatedBytes, 0.99D));
+		allocation.addProperty("maxBytesPerTick", TickCostRecorder.percentile(allocatedBytes, 1.0D));
+		report.add("allocation", allocation);
+		JsonObject phases = new JsonObject();
+		for (Map.Entry<String, RollingHistogram> phase : manager.metrics().phases().entrySet()) {
+			RollingHistogram.Snapshot snapshot = phase.getValue().snapshot();
+			JsonObject entry = new JsonObject();
+			entry.addProperty("count", snapshot.count());
+			entry.addProperty("p50Nanos", snapshot.p50Nanos());
+			entry.addProperty("p99Nanos", snapshot.p99Nanos());
+			entry.addProperty("maxNanos", snapshot.maxNanos());
+			phases.add(phase.getKey(), entry);
+		}
+		report.add("phasesLastMinute", phases);
+		JsonObject thresholds = new JsonObject();
+		thresholds.addProperty("maxTickP99Nanos", maxTickP99Nanos);
+		thresholds.addProperty("maxAllocatedBytesPerTick", maxAllocatedBytesPerTick);
+		report.add("thresholds", thresholds);
+		report.addProperty("passed", passed);
+		writeReport(reportPath, report);
+
+		for (ServerPlayer player : players) {
+			player.connection.onDisconnect(new DisconnectionDetails(Component.literal("Load test finished")));
+		}
+		if (!passed) {
+			helper.fail(Component.literal(
+				"TomorrowYou tick cost over threshold: p99 " + tickP99 + " ns (max " + maxTickP99Nanos + "), mean allocation "
+					+ allocatedMean + " B/tick (max " + maxAllocatedBytesPerTick + "); see " + reportPath.toAbsolutePath()
+			));
+			return;
+		}
+		HardcoreUnique.LOGGER.info("TomorrowYou load test report written to {}", reportPath.toAbsolutePath());
+		helper.succeed();
+	}
+
+	private static void fail(GameTestHelper helper, TickCostRecorder recorder, String message) {
+		recorder.stop();
+		helper.fail(Component.literal(message));
+	}
+
+	private static void writeReport(Path reportPath, JsonObject report) {
+		try {
+			Path parent = reportPath.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			try (Writer writer = Files.newBufferedWriter(reportPath)) {
+				GSON.toJson(report, writer);
+			}
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.error("Failed to write TomorrowYou load test report", exception);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.xetpy.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Config sanitizing on its own and the full read-parse-sanitize path from disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigBenchmark {
+	private Path directory;
+	private Path filePath;
+	private TomorrowYouConfig config;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("tomorrow-you-config-bench");
+		filePath = directory.resolve("hardcore-unique.tomorrow-you.json");
+		config = new TomorrowYouConfig();
+		config.save(filePath);
+	}
+
+	@Benchmark
+	public TomorrowYouConfig sanitize() {
+		config.sanitize();
+		return config;
+	}
+
+	@Benchmark
+	public TomorrowYouConfig load() {
+		return TomorrowYouConfig.load(filePath);
+	}
+
+	@TearDown(Level.Trial)
+	public void cleanUp() throws IOException {
+		Files.deleteIfExists(filePath);
+		Files.deleteIfExists(directory);
+	}
+}
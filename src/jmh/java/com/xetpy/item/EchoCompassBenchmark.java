@@ -0,0 +1,108 @@
+package com.xetpy.item;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.GlobalPos;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.CustomData;
+import net.minecraft.world.level.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compass stack handling on a full player inventory: issuing metadata, the ownership scan a cache miss does,
+ * and the one-time migration of a legacy CUSTOM_DATA compass.
+ * The component type is used without being registered, since the built-in registries are frozen outside Fabric.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EchoCompassBenchmark {
+	private static final BlockPos FALLBACK_POS = new BlockPos(0, 64, 0);
+
+	private final UUID ownerId = UUID.randomUUID();
+	private final GlobalPos target = GlobalPos.of(Level.OVERWORLD, new BlockPos(1234, 71, -5678));
+	private final List<ItemStack> inventory = new ArrayList<>();
+	private ItemStack compass;
+	private ItemStack legacyTemplate;
+
+	@Setup
+	public void setUp() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+
+		compass = new ItemStack(Items.COMPASS);
+		EchoCompass.issue(compass, ownerId, "Owner", 120_000L, 5L, Long.MAX_VALUE, target);
+
+		ItemStack foreignCompass = new ItemStack(Items.COMPASS);
+		EchoCompass.issue(foreignCompass, UUID.randomUUID(), "Someone", 96_000L, 4L, Long.MAX_VALUE, target);
+
+		// Owned compass near the end of the inventory, behind ordinary items and two compasses that do not match.
+		for (int slot = 0; slot < 36; slot++) {
+			ItemStack stack = switch (slot) {
+				case 8 -> new ItemStack(Items.COMPASS);
+				case 17 -> foreignCompass;
+				case 30 -> compass;
+				default -> new ItemStack(slot % 3 == 0 ? Items.COBBLESTONE : slot % 3 == 1 ? Items.TORCH : Items.BREAD, 1 + slot);
+			};
+			inventory.add(stack);
+		}
+
+		CompoundTag legacy = new CompoundTag();
+		legacy.putBoolean("tomorrowYouUnique", true);
+		legacy.putString("ownerUuid", ownerId.toString());
+		legacy.putString("ownerName", "Owner");
+		legacy.putLong("issuedAtGameTime", 120_000L);
+		legacy.putLong("issuedAtDay", 5L);
+		legacy.putString("artifactId", UUID.randomUUID().toString());
+		legacy.putString("compassMode", "chaotic");
+		legacy.putString("targetWorld", "minecraft:overworld");
+		legacy.putInt("targetX", 1234);
+		legacy.putInt("targetY", 71);
+		legacy.putInt("targetZ", -5678);
+		legacyTemplate = new ItemStack(Items.COMPASS);
+		legacyTemplate.set(DataComponents.CUSTOM_DATA, CustomData.of(legacy));
+	}
+
+	@Benchmark
+	public ItemStack issue() {
+		EchoCompass.issue(compass, ownerId, "Owner", 120_000L, 5L, 126_000L, target);
+		return compass;
+	}
+
+	@Benchmark
+	public int findOwnedSlot() {
+		for (int slot = 0; slot < inventory.size(); slot++) {
+			if (EchoCompass.isOwnedBy(inventory.get(slot), ownerId, Level.OVERWORLD, FALLBACK_POS)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	// Includes copying the template, since migration consumes the legacy tag.
+	@Benchmark
+	public boolean migrateLegacy() {
+		return EchoCompass.isOwnedBy(legacyTemplate.copy(), ownerId, Level.OVERWORLD, FALLBACK_POS);
+	}
+}
@@ -0,0 +1,52 @@
+package com.xetpy.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-player cost of the work a shard write does: the snapshot copy taken on the tick thread,
+ * and encoding and decoding on the storage thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerDataBenchmark {
+	private TomorrowYouState.PlayerTimelineData data;
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() throws IOException {
+		data = StateFixtures.player(new Random(42L));
+		encoded = StateCodec.encode(data);
+	}
+
+	@Benchmark
+	public TomorrowYouState.PlayerTimelineData copy() {
+		return data.copy();
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return StateCodec.encode(data);
+	}
+
+	@Benchmark
+	public TomorrowYouState.PlayerTimelineData decode() throws IOException {
+		return StateCodec.decode(encoded, StateFixtures.HISTORY_RETENTION);
+	}
+}
@@ -0,0 +1,110 @@
+package com.xetpy.state;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole-state save and load through the public API, against a temporary directory.
+ * {@code save} rewrites the shard of every player, as a shutdown after a busy session does;
+ * {@code load} opens the state and reads every shard back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StateBenchmark {
+	private static final int ENCOUNTERS_PER_PLAYER = 8;
+
+	@Param({"1000", "10000", "100000"})
+	public int players;
+
+	private Path directory;
+	private List<UUID> playerIds;
+	private TomorrowYouState state;
+
+	@Setup(Level.Trial)
+	public void populate() throws IOException, InterruptedException {
+		directory = Files.createTempDirectory("tomorrow-you-state-bench");
+		state = TomorrowYouState.load(directory, StateFixtures.HISTORY_RETENTION);
+		playerIds = new ArrayList<>(players);
+		Random random = new Random(42L);
+		CountDownLatch loaded = new CountDownLatch(players);
+		for (int index = 0; index < players; index++) {
+			UUID playerId = new UUID(random.nextLong(), random.nextLong());
+			playerIds.add(playerId);
+			state.requestLoad(playerId, Runnable::run, data -> loaded.countDown());
+		}
+		loaded.await();
+		for (UUID playerId : playerIds) {
+			for (int encounter = 0; encounter < ENCOUNTERS_PER_PLAYER; encounter++) {
+				state.finalizeEncounter(playerId, StateFixtures.encounter(random));
+			}
+			state.startEvent(playerId, StateFixtures.event(random), random.nextInt(10_000_000));
+		}
+		state.flush();
+	}
+
+	@Benchmark
+	public void save(DirtyPlayers dirty) {
+		state.flush();
+	}
+
+	@Benchmark
+	public int load() throws InterruptedException {
+		TomorrowYouState loadedState = TomorrowYouState.load(directory, StateFixtures.HISTORY_RETENTION);
+		CountDownLatch loaded = new CountDownLatch(playerIds.size());
+		for (UUID playerId : playerIds) {
+			loadedState.lookup(playerId, Runnable::run, data -> loaded.countDown());
+		}
+		loaded.await();
+		return loadedState.cachedPlayerCount();
+	}
+
+	@TearDown(Level.Trial)
+	public void cleanUp() throws IOException {
+		state.flush();
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	/**
+	 * Touches every player before each save, so the save has a shard to write for all of them.
+	 */
+	@State(Scope.Benchmark)
+	public static class DirtyPlayers {
+		@Setup(Level.Invocation)
+		public void touchAll(StateBenchmark benchmark) {
+			for (UUID playerId : benchmark.playerIds) {
+				benchmark.state.markEchoSpawned(playerId, UUID.randomUUID());
+			}
+		}
+	}
+}
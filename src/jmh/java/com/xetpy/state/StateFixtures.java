@@ -0,0 +1,67 @@
+package com.xetpy.state;
+
+import java.util.Random;
+
+/**
+ * Builds player state shaped like a long-running server: a live event with a frozen inventory and a full history.
+ */
+final class StateFixtures {
+	static final int HISTORY_RETENTION = 16;
+
+	private static final String[] DIMENSIONS = {"minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"};
+	private static final String[] OUTCOMES = {"first_visit_done", "tomorrow_compass", "tomorrow_no_levels", "tomorrow_drained", "player_died"};
+	private static final String[] ITEMS = {"Булыжник", "Факел", "Железный слиток", "Хлеб", "Доски", "Алмаз", "Уголь", "Стрела"};
+
+	private StateFixtures() {
+	}
+
+	static TomorrowYouState.ActiveEvent event(Random random) {
+		TomorrowYouState.ActiveEvent event = new TomorrowYouState.ActiveEvent();
+		event.worldKey = DIMENSIONS[random.nextInt(DIMENSIONS.length)];
+		event.targetX = random.nextInt(20_000) - 10_000;
+		event.targetY = 40 + random.nextInt(80);
+		event.targetZ = random.nextInt(20_000) - 10_000;
+		event.createdAt = random.nextInt(10_000_000);
+		event.createdDay = event.createdAt / 24000L;
+		event.playerNameAtCreation = "Player" + random.nextInt(100_000);
+		event.mainHandItem = "minecraft:iron_sword";
+		event.mainHandCount = 1;
+		event.offHandItem = "minecraft:torch";
+		event.offHandCount = 1 + random.nextInt(64);
+		event.headArmor = "minecraft:iron_helmet";
+		event.chestArmor = "minecraft:iron_chestplate";
+		event.legsArmor = "minecraft:iron_leggings";
+		event.feetArmor = "minecraft:iron_boots";
+		for (int slot = 0; slot < 36; slot++) {
+			event.frozenInventory.add(ITEMS[random.nextInt(ITEMS.length)] + " x" + (1 + random.nextInt(64)));
+		}
+		return event;
+	}
+
+	static TomorrowYouState.EncounterRecord encounter(Random random) {
+		TomorrowYouState.EncounterRecord record = new TomorrowYouState.EncounterRecord();
+		record.worldKey = DIMENSIONS[random.nextInt(DIMENSIONS.length)];
+		record.x = random.nextInt(20_000) - 10_000;
+		record.y = 40 + random.nextInt(80);
+		record.z = random.nextInt(20_000) - 10_000;
+		record.createdDay = random.nextInt(400);
+		record.resolvedDay = record.createdDay + 1;
+		record.outcome = OUTCOMES[random.nextInt(OUTCOMES.length)];
+		record.gotCompass = random.nextBoolean();
+		return record;
+	}
+
+	/**
+	 * A player with twice the retained history, so part of it is folded into counters, and an active event.
+	 */
+	static TomorrowYouState.PlayerTimelineData player(Random random) {
+		TomorrowYouState.PlayerTimelineData data = new TomorrowYouState.PlayerTimelineData();
+		for (int encounter = 0; encounter < HISTORY_RETENTION * 2; encounter++) {
+			data.history.add(encounter(random), HISTORY_RETENTION);
+			data.completedEncounters++;
+		}
+		data.activeEvent = event(random);
+		data.lastTriggerGameTime = data.activeEvent.createdAt;
+		return data;
+	}
+}
@@ -0,0 +1,124 @@
+package com.xetpy.state;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The legacy single-file Gson format against the binary StateCodec shards, in memory so only the format is measured.
+ * {@code records} is the total number of history records, spread over players holding a full retained history each;
+ * disk cost is covered by {@link StateBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StateFormatBenchmark {
+	// Same pretty-printed output the single-file state was saved with.
+	private static final Gson LEGACY_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	@Param({"10000", "100000", "1000000"})
+	public int records;
+
+	private Map<UUID, TomorrowYouState.PlayerTimelineData> players;
+	private byte[] json;
+	private List<byte[]> shards;
+
+	@Setup(Level.Trial)
+	public void populate() throws IOException {
+		Random random = new Random(42L);
+		players = new LinkedHashMap<>();
+		for (int index = 0; index < records / StateFixtures.HISTORY_RETENTION; index++) {
+			TomorrowYouState.PlayerTimelineData data = new TomorrowYouState.PlayerTimelineData();
+			for (int encounter = 0; encounter < StateFixtures.HISTORY_RETENTION; encounter++) {
+				data.history.add(StateFixtures.encounter(random), StateFixtures.HISTORY_RETENTION);
+				data.completedEncounters++;
+			}
+			players.put(new UUID(random.nextLong(), random.nextLong()), data);
+		}
+		json = jsonSave();
+		shards = codecSave();
+	}
+
+	@Benchmark
+	public byte[] jsonSave() {
+		LegacyState legacy = new LegacyState();
+		for (Map.Entry<UUID, TomorrowYouState.PlayerTimelineData> entry : players.entrySet()) {
+			TomorrowYouState.PlayerTimelineData data = entry.getValue();
+			LegacyPlayerData legacyPlayer = new LegacyPlayerData();
+			legacyPlayer.playerId = entry.getKey().toString();
+			legacyPlayer.completedEncounters = data.completedEncounters;
+			legacyPlayer.lastTriggerGameTime = data.lastTriggerGameTime;
+			legacyPlayer.activeEvent = data.activeEvent;
+			legacyPlayer.history = new ArrayList<>(data.history.recent());
+			legacy.players.add(legacyPlayer);
+		}
+		return LEGACY_GSON.toJson(legacy).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public int jsonLoad() throws IOException {
+		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)) {
+			return TomorrowYouState.readLegacyState(reader, StateFixtures.HISTORY_RETENTION).size();
+		}
+	}
+
+	@Benchmark
+	public List<byte[]> codecSave() throws IOException {
+		List<byte[]> encoded = new ArrayList<>(players.size());
+		for (TomorrowYouState.PlayerTimelineData data : players.values()) {
+			encoded.add(StateCodec.encode(data));
+		}
+		return encoded;
+	}
+
+	@Benchmark
+	public int codecLoad() throws IOException {
+		int total = 0;
+		for (byte[] shard : shards) {
+			total += StateCodec.decode(shard, StateFixtures.HISTORY_RETENTION).completedEncounters;
+		}
+		return total;
+	}
+
+	// Field-for-field mirror of the private classes the legacy file is read with.
+	private static final class LegacyState {
+		long journalSeq;
+		List<LegacyPlayerData> players = new ArrayList<>();
+	}
+
+	private static final class LegacyPlayerData {
+		String playerId;
+		long journalSeq;
+		int completedEncounters;
+		long lastTriggerGameTime = Long.MIN_VALUE;
+		TomorrowYouState.ActiveEvent activeEvent;
+		List<TomorrowYouState.EncounterRecord> history = new ArrayList<>();
+	}
+}
@@ -2,8 +2,11 @@ package com.xetpy;
 
 import net.fabricmc.api.ModInitializer;
 
+import com.xetpy.config.ConfigReloader;
 import com.xetpy.config.TomorrowYouConfig;
 import com.xetpy.event.TomorrowYouManager;
+import com.xetpy.item.ModDataComponents;
+import com.xetpy.network.ModNetworking;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,10 +18,19 @@ public class HardcoreUnique implements ModInitializer {
 	// That way, it's clear which mod wrote info, warnings, and errors.
 	public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
 
+	private static TomorrowYouManager tomorrowYou;
+
 	@Override
 	public void onInitialize() {
-		TomorrowYouConfig config = TomorrowYouConfig.load();
-		new TomorrowYouManager(config).register();
+		ModDataComponents.register();
+		ModNetworking.register();
+		ConfigReloader configReloader = new ConfigReloader(TomorrowYouConfig.defaultPath(), TomorrowYouConfig.load());
+		tomorrowYou = new TomorrowYouManager(configReloader);
+		tomorrowYou.register();
 		LOGGER.info("Hardcore Unique initialized: TomorrowYou event is active");
 	}
-}
\ No newline at end of file
+
+	public static TomorrowYouManager tomorrowYou() {
+		return tomorrowYou;
+	}
+}
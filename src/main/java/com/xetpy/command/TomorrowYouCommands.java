@@ -0,0 +1,102 @@
+package com.xetpy.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import com.xetpy.event.TickBudget;
+import com.xetpy.event.TomorrowYouManager;
+import com.xetpy.metrics.RollingHistogram;
+import com.xetpy.metrics.TomorrowYouMetrics;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.EntityArgument;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public final class TomorrowYouCommands {
+	private TomorrowYouCommands() {
+	}
+
+	public static void register(CommandDispatcher<CommandSourceStack> dispatcher, TomorrowYouManager manager) {
+		dispatcher.register(
+			Commands.literal("tomorrowyou")
+				.requires(Commands.hasPermission(Commands.LEVEL_GAMEMASTERS))
+				.then(Commands.literal("force")
+					.executes(context -> force(context, manager, context.getSource().getPlayerOrException()))
+					.then(Commands.argument("player", EntityArgument.player())
+						.executes(context -> force(context, manager, EntityArgument.getPlayer(context, "player")))))
+				.then(Commands.literal("budget")
+					.executes(context -> budget(context, manager)))
+				.then(Commands.literal("stats")
+					.executes(context -> stats(context, manager)))
+				.then(Commands.literal("trace")
+					.then(Commands.argument("player", EntityArgument.player())
+						.executes(context -> trace(context, manager, EntityArgument.getPlayer(context, "player")))))
+		);
+	}
+
+	private static int force(CommandContext<CommandSourceStack> context, TomorrowYouManager manager, ServerPlayer player) {
+		if (!manager.handleWakeTrigger(player, true)) {
+			context.getSource().sendFailure(Component.literal("Не удалось запустить событие для " + player.getName().getString() + ": уже активно, исчерпан лимит или данные еще не загружены."));
+			return 0;
+		}
+		context.getSource().sendSuccess(() -> Component.literal("Событие запущено для " + player.getName().getString() + "."), true);
+		return 1;
+	}
+
+	private static int budget(CommandContext<CommandSourceStack> context, TomorrowYouManager manager) {
+		TickBudget budget = manager.tickBudget();
+		context.getSource().sendSuccess(() -> Component.literal(
+			"Последний тик: " + budget.lastTickNanos() / 1000L + " мкс"
+				+ ", тиков сверх бюджета: " + budget.overrunTicks()
+				+ ", тиков с отложенной работой: " + budget.deferredTicks()
+				+ ", отложено задач: " + budget.deferredTasks()
+				+ ", отброшено пакетов эффектов: " + manager.droppedEffectPackets()
+		), false);
+		return 1;
+	}
+
+	private static int stats(CommandContext<CommandSourceStack> context, TomorrowYouManager manager) {
+		TomorrowYouMetrics metrics = manager.metrics();
+		CommandSourceStack source = context.getSource();
+		source.sendSuccess(() -> Component.literal("TomorrowYou, последняя минута (мкс):"), false);
+		for (Map.Entry<String, RollingHistogram> phase : metrics.phases().entrySet()) {
+			RollingHistogram.Snapshot snapshot = phase.getValue().snapshot();
+			source.sendSuccess(() -> Component.literal(
+				phase.getKey() + ": n=" + snapshot.count()
+					+ " p50=" + micros(snapshot.p50Nanos())
+					+ " p99=" + micros(snapshot.p99Nanos())
+					+ " max=" + micros(snapshot.maxNanos())
+			), false);
+		}
+		source.sendSuccess(() -> Component.literal(
+			"Активных событий: " + metrics.activeEvents()
+				+ ", эхо в мире: " + metrics.liveEchoes()
+				+ ", состояний в памяти: " + metrics.cachedPlayerStates()
+				+ ", ожидают пробуждения: " + metrics.pendingWakes()
+				+ ", запланировано задач: " + metrics.scheduledTasks()
+		), false);
+		return 1;
+	}
+
+	private static int trace(CommandContext<CommandSourceStack> context, TomorrowYouManager manager, ServerPlayer player) {
+		List<String> lines = manager.trace(player);
+		CommandSourceStack source = context.getSource();
+		if (lines == null || lines.isEmpty()) {
+			source.sendFailure(Component.literal("Для " + player.getName().getString() + " пока нет записей трассы."));
+			return 0;
+		}
+		source.sendSuccess(() -> Component.literal("Трасса " + player.getName().getString() + ", последние " + lines.size() + " записей:"), false);
+		for (String line : lines) {
+			source.sendSuccess(() -> Component.literal(line), false);
+		}
+		return lines.size();
+	}
+
+	private static String micros(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1000.0D);
+	}
+}
@@ -0,0 +1,95 @@
+package com.xetpy.config;
+
+/**
+ * Immutable view of a sanitized {@link TomorrowYouConfig} with the values the tick loop derives from it
+ * (tick counts, squared radii) computed once. A new instance is built on every reload and swapped in whole,
+ * so a reader never sees a mix of old and new values.
+ */
+public final class CompiledConfig {
+	public final double wakeEventChance;
+	public final int targetMinDistance;
+	public final int targetMaxDistance;
+	public final int targetSelectionTimeoutTicks;
+	public final boolean targetPreferGeneratedChunks;
+	public final int spawnRadius;
+	public final double spawnRadiusSq;
+	public final int vanishRadius;
+	public final double vanishRadiusSq;
+	public final int attackRadius;
+	public final double attackRadiusSq;
+	// The heartbeat is heard a little beyond attack range.
+	public final int heartbeatRadius;
+	public final double heartbeatRadiusSq;
+	public final int attackCooldownTicks;
+	public final int xpLevelsPerHit;
+	public final int tomorrowTriggerRadius;
+	public final double tomorrowTriggerRadiusSq;
+	public final int tomorrowBranchDurationTicks;
+	public final int tomorrowXpPulseTicks;
+	public final int tomorrowXpDrainPerPulse;
+	public final int compassRequiredLevels;
+	public final int compassUnstableTicks;
+	public final int compassChaosUpdateTicks;
+	public final double compassRewardChance;
+	public final boolean updateExistingCompass;
+	public final boolean debugVerboseLogs;
+	public final int maxEncountersPerPlayer;
+	public final long cooldownTicks;
+	public final boolean debugForceEvent;
+	public final int stateCompactionIntervalSeconds;
+	public final int stateOfflineCacheSize;
+	public final int historyRetentionPerPlayer;
+	public final double maxPlayerSpeedBlocksPerTick;
+	public final long tickBudgetNanos;
+	public final int effectPacketsPerPlayerPerTick;
+
+	private CompiledConfig(TomorrowYouConfig config) {
+		wakeEventChance = config.wakeEventChance;
+		targetMinDistance = config.targetMinDistance;
+		targetMaxDistance = config.targetMaxDistance;
+		targetSelectionTimeoutTicks = config.targetSelectionTimeoutTicks;
+		targetPreferGeneratedChunks = config.targetPreferGeneratedChunks;
+		spawnRadius = config.spawnRadius;
+		spawnRadiusSq = square(config.spawnRadius);
+		vanishRadius = config.vanishRadius;
+		vanishRadiusSq = square(config.vanishRadius);
+		attackRadius = config.attackRadius;
+		attackRadiusSq = square(config.attackRadius);
+		heartbeatRadius = config.attackRadius + 5;
+		heartbeatRadiusSq = square(heartbeatRadius);
+		attackCooldownTicks = config.attackCooldownTicks;
+		xpLevelsPerHit = config.xpLevelsPerHit;
+		tomorrowTriggerRadius = config.tomorrowTriggerRadius;
+		tomorrowTriggerRadiusSq = square(config.tomorrowTriggerRadius);
+		tomorrowBranchDurationTicks = config.tomorrowBranchDurationTicks;
+		tomorrowXpPulseTicks = config.tomorrowXpPulseTicks;
+		tomorrowXpDrainPerPulse = config.tomorrowXpDrainPerPulse;
+		compassRequiredLevels = config.compassRequiredLevels;
+		compassUnstableTicks = config.compassUnstableTicks;
+		compassChaosUpdateTicks = config.compassChaosUpdateTicks;
+		compassRewardChance = config.compassRewardChance;
+		updateExistingCompass = config.updateExistingCompass;
+		debugVerboseLogs = config.debugVerboseLogs;
+		maxEncountersPerPlayer = config.maxEncountersPerPlayer;
+		cooldownTicks = config.cooldownMinutes * 60L * 20L;
+		debugForceEvent = config.debugForceEvent;
+		stateCompactionIntervalSeconds = config.stateCompactionIntervalSeconds;
+		stateOfflineCacheSize = config.stateOfflineCacheSize;
+		historyRetentionPerPlayer = config.historyRetentionPerPlayer;
+		maxPlayerSpeedBlocksPerTick = config.maxPlayerSpeedBlocksPerTick;
+		tickBudgetNanos = config.tickBudgetNanos;
+		effectPacketsPerPlayerPerTick = config.effectPacketsPerPlayerPerTick;
+	}
+
+	/**
+	 * Sanitizes the config in place and compiles it.
+	 */
+	public static CompiledConfig compile(TomorrowYouConfig config) {
+		config.sanitize();
+		return new CompiledConfig(config);
+	}
+
+	private static double square(double value) {
+		return value * value;
+	}
+}
@@ -0,0 +1,123 @@
+package com.xetpy.config;
+
+import com.google.gson.JsonParseException;
+import com.xetpy.HardcoreUnique;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Publishes the current {@link CompiledConfig} through a single volatile reference and rebuilds it when the config
+ * file changes on disk. A file that fails to parse leaves the previous snapshot in place.
+ */
+public final class ConfigReloader {
+	// Editors often write a file in several steps; the reload waits for the writes to settle.
+	private static final long SETTLE_MILLIS = 200L;
+
+	private final Path filePath;
+	private volatile CompiledConfig current;
+	private WatchService watchService;
+	private Thread watcher;
+
+	public ConfigReloader(Path filePath, TomorrowYouConfig initial) {
+		this.filePath = filePath.toAbsolutePath();
+		this.current = CompiledConfig.compile(initial);
+	}
+
+	public CompiledConfig current() {
+		return current;
+	}
+
+	/**
+	 * Compiles the given config and makes it current, as if it had been read from the file.
+	 */
+	public void publish(TomorrowYouConfig config) {
+		current = CompiledConfig.compile(config);
+	}
+
+	public synchronized void start() {
+		if (watcher != null) {
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			filePath.getParent().register(
+				watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY
+			);
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.error("Failed to watch {}; config changes need a restart", filePath, exception);
+			return;
+		}
+		watcher = new Thread(this::watch, "HardcoreUnique-ConfigWatcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	public synchronized void stop() {
+		if (watcher == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.warn("Failed to close config watcher", exception);
+		}
+		watcher = null;
+		watchService = null;
+	}
+
+	private void watch() {
+		WatchService service = watchService;
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.context() instanceof Path changedPath && filePath.getFileName().equals(changedPath)) {
+						changed = true;
+					}
+				}
+				key.reset();
+				if (changed) {
+					Thread.sleep(SETTLE_MILLIS);
+					drain(service);
+					reload();
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException ignored) {
+			// Stopped together with the server.
+		}
+	}
+
+	private static void drain(WatchService service) {
+		WatchKey key;
+		while ((key = service.poll()) != null) {
+			key.pollEvents();
+			key.reset();
+		}
+	}
+
+	private void reload() {
+		TomorrowYouConfig config;
+		try {
+			config = TomorrowYouConfig.read(filePath);
+		} catch (IOException | JsonParseException exception) {
+			HardcoreUnique.LOGGER.warn("Ignoring invalid config change in {}, keeping the previous settings: {}", filePath, exception.getMessage());
+			return;
+		}
+		if (config == null) {
+			HardcoreUnique.LOGGER.warn("Ignoring empty config file {}, keeping the previous settings", filePath);
+			return;
+		}
+		current = CompiledConfig.compile(config);
+		HardcoreUnique.LOGGER.info("Reloaded TomorrowYou config from {}", filePath);
+	}
+}
@@ -14,11 +14,13 @@ import java.nio.file.Path;
 
 public final class TomorrowYouConfig {
 	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-	private static final Path FILE_PATH = FabricLoader.getInstance().getConfigDir().resolve("hardcore-unique.tomorrow-you.json");
+	private static final String FILE_NAME = "hardcore-unique.tomorrow-you.json";
 
 	public double wakeEventChance = 0.25D;
 	public int targetMinDistance = 80;
 	public int targetMaxDistance = 400;
+	public int targetSelectionTimeoutTicks = 200;
+	public boolean targetPreferGeneratedChunks = false;
 	public int spawnRadius = 24;
 	public int vanishRadius = 3;
 	public int attackRadius = 12;
@@ -37,11 +39,28 @@ public final class TomorrowYouConfig {
 	public int maxEncountersPerPlayer = 1;
 	public int cooldownMinutes = 120;
 	public boolean debugForceEvent = false;
+	public int stateCompactionIntervalSeconds = 300;
+	public int stateOfflineCacheSize = 256;
+	public int historyRetentionPerPlayer = 16;
+	public double maxPlayerSpeedBlocksPerTick = 2.0D;
+	public long tickBudgetNanos = 1_000_000L;
+	public int effectPacketsPerPlayerPerTick = 4;
+
+	public static Path defaultPath() {
+		return FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+	}
 
 	public static TomorrowYouConfig load() {
-		if (Files.exists(FILE_PATH)) {
-			try (Reader reader = Files.newBufferedReader(FILE_PATH)) {
-				TomorrowYouConfig config = GSON.fromJson(reader, TomorrowYouConfig.class);
+		return load(defaultPath());
+	}
+
+	/**
+	 * Reads and sanitizes the config at {@code filePath}, writing the defaults there if it does not exist or cannot be read.
+	 */
+	public static TomorrowYouConfig load(Path filePath) {
+		if (Files.exists(filePath)) {
+			try {
+				TomorrowYouConfig config = read(filePath);
 				if (config == null) {
 					config = new TomorrowYouConfig();
 				}
@@ -54,14 +73,27 @@ public final class TomorrowYouConfig {
 
 		TomorrowYouConfig defaults = new TomorrowYouConfig();
 		defaults.sanitize();
-		defaults.save();
+		defaults.save(filePath);
 		return defaults;
 	}
 
+	/**
+	 * Parses the file as is, without sanitizing or falling back to defaults. Returns null for an empty file.
+	 */
+	public static TomorrowYouConfig read(Path filePath) throws IOException {
+		try (Reader reader = Files.newBufferedReader(filePath)) {
+			return GSON.fromJson(reader, TomorrowYouConfig.class);
+		}
+	}
+
 	public void save() {
+		save(defaultPath());
+	}
+
+	public void save(Path filePath) {
 		try {
-			Files.createDirectories(FILE_PATH.getParent());
-			try (Writer writer = Files.newBufferedWriter(FILE_PATH)) {
+			Files.createDirectories(filePath.getParent());
+			try (Writer writer = Files.newBufferedWriter(filePath)) {
 				GSON.toJson(this, writer);
 			}
 		} catch (IOException exception) {
@@ -69,10 +101,11 @@ public final class TomorrowYouConfig {
 		}
 	}
 
-	private void sanitize() {
+	void sanitize() {
 		wakeEventChance = clamp(wakeEventChance, 0.0D, 1.0D);
 		targetMinDistance = Math.max(16, targetMinDistance);
 		targetMaxDistance = Math.max(targetMinDistance + 1, targetMaxDistance);
+		targetSelectionTimeoutTicks = Math.max(20, targetSelectionTimeoutTicks);
 		spawnRadius = Math.max(8, spawnRadius);
 		vanishRadius = Math.max(1, vanishRadius);
 		attackRadius = Math.max(vanishRadius + 1, attackRadius);
@@ -90,6 +123,12 @@ public final class TomorrowYouConfig {
 		compassRewardChance = clamp(compassRewardChance, 0.0D, 1.0D);
 		maxEncountersPerPlayer = Math.max(1, maxEncountersPerPlayer);
 		cooldownMinutes = Math.max(1, cooldownMinutes);
+		stateCompactionIntervalSeconds = Math.max(10, stateCompactionIntervalSeconds);
+		stateOfflineCacheSize = Math.max(0, stateOfflineCacheSize);
+		historyRetentionPerPlayer = Math.max(1, historyRetentionPerPlayer);
+		maxPlayerSpeedBlocksPerTick = clamp(maxPlayerSpeedBlocksPerTick, 0.1D, 100.0D);
+		tickBudgetNanos = Math.max(50_000L, tickBudgetNanos);
+		effectPacketsPerPlayerPerTick = Math.max(1, effectPacketsPerPlayerPerTick);
 	}
 
 	private static double clamp(double value, double min, double max) {
@@ -0,0 +1,105 @@
+package com.xetpy.event;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Echo spawns waiting for their target chunk. Spawns whose chunk is not loaded sit under its position
+ * until the chunk-load callback moves them to the ready list; ready spawns materialize on the next tick
+ * once the chunk's entities are loaded too, so a saved echo is never duplicated by a spawn that raced it.
+ */
+final class EchoSpawnQueue {
+	private final Map<Long, List<PlayerSession>> waitingByChunk = new HashMap<>();
+	private final List<PlayerSession> ready = new ArrayList<>();
+
+	void add(PlayerSession session, ServerLevel world, BlockPos target) {
+		session.echoSpawnPending = true;
+		session.echoSpawnWorld = world;
+		session.echoSpawnChunk = ChunkPos.asLong(target);
+		if (isChunkLoaded(session)) {
+			ready.add(session);
+		} else {
+			waitingByChunk.computeIfAbsent(session.echoSpawnChunk, ignored -> new ArrayList<>()).add(session);
+		}
+	}
+
+	void remove(PlayerSession session) {
+		if (!session.echoSpawnPending) {
+			return;
+		}
+		List<PlayerSession> waiting = waitingByChunk.get(session.echoSpawnChunk);
+		if (waiting != null && waiting.remove(session) && waiting.isEmpty()) {
+			waitingByChunk.remove(session.echoSpawnChunk);
+		}
+		ready.remove(session);
+		clear(session);
+	}
+
+	void onChunkLoad(ServerLevel world, ChunkPos pos) {
+		long chunkKey = pos.toLong();
+		List<PlayerSession> waiting = waitingByChunk.get(chunkKey);
+		if (waiting == null) {
+			return;
+		}
+		Iterator<PlayerSession> iterator = waiting.iterator();
+		while (iterator.hasNext()) {
+			PlayerSession session = iterator.next();
+			if (session.echoSpawnWorld == world) {
+				iterator.remove();
+				ready.add(session);
+			}
+		}
+		if (waiting.isEmpty()) {
+			waitingByChunk.remove(chunkKey);
+		}
+	}
+
+	/**
+	 * Hands every ready spawn whose chunk entities are loaded to {@code spawn}. Spawns whose chunk unloaded again
+	 * go back to waiting; the rest stay ready for the next tick.
+	 */
+	void drain(Consumer<PlayerSession> spawn) {
+		if (ready.isEmpty()) {
+			return;
+		}
+		List<PlayerSession> due = new ArrayList<>();
+		Iterator<PlayerSession> iterator = ready.iterator();
+		while (iterator.hasNext()) {
+			PlayerSession session = iterator.next();
+			if (!isChunkLoaded(session)) {
+				iterator.remove();
+				waitingByChunk.computeIfAbsent(session.echoSpawnChunk, ignored -> new ArrayList<>()).add(session);
+			} else if (session.echoSpawnWorld.areEntitiesLoaded(session.echoSpawnChunk)) {
+				iterator.remove();
+				clear(session);
+				due.add(session);
+			}
+		}
+		due.forEach(spawn);
+	}
+
+	int size() {
+		int size = ready.size();
+		for (List<PlayerSession> waiting : waitingByChunk.values()) {
+			size += waiting.size();
+		}
+		return size;
+	}
+
+	private static boolean isChunkLoaded(PlayerSession session) {
+		return session.echoSpawnWorld.hasChunk(ChunkPos.getX(session.echoSpawnChunk), ChunkPos.getZ(session.echoSpawnChunk));
+	}
+
+	private static void clear(PlayerSession session) {
+		session.echoSpawnPending = false;
+		session.echoSpawnWorld = null;
+	}
+}
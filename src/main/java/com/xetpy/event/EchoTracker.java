@@ -0,0 +1,91 @@
+package com.xetpy.event;
+
+import com.xetpy.HardcoreUnique;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.decoration.ArmorStand;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Links live echo entities to the sessions of their owners. Links are made when an expected echo
+ * is spawned or its chunk loads and dropped when it unloads, so the tick path only dereferences a field.
+ * Echoes carry entity tags with their owner, which lets stray ones be recognized when their chunk loads.
+ */
+final class EchoTracker {
+	private static final String ECHO_TAG = HardcoreUnique.MOD_ID + ".echo";
+	private static final String OWNER_TAG_PREFIX = HardcoreUnique.MOD_ID + ".echo_owner.";
+
+	private final Map<UUID, PlayerSession> sessionsByEcho = new HashMap<>();
+
+	static void tag(ArmorStand echo, UUID ownerId) {
+		echo.addTag(ECHO_TAG);
+		echo.addTag(OWNER_TAG_PREFIX + ownerId);
+	}
+
+	/**
+	 * Returns the owner recorded on a tagged echo, or null for any other entity.
+	 */
+	static UUID ownerOf(Entity entity) {
+		if (!entity.entityTags().contains(ECHO_TAG)) {
+			return null;
+		}
+		for (String tag : entity.entityTags()) {
+			if (tag.startsWith(OWNER_TAG_PREFIX)) {
+				try {
+					return UUID.fromString(tag.substring(OWNER_TAG_PREFIX.length()));
+				} catch (IllegalArgumentException ignored) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Registers the echo the session's event refers to, so it is linked as soon as it loads.
+	 */
+	void expect(PlayerSession session, UUID echoId) {
+		forget(session);
+		session.echoId = echoId;
+		sessionsByEcho.put(echoId, session);
+	}
+
+	void link(PlayerSession session, ArmorStand echo) {
+		if (!echo.getUUID().equals(session.echoId)) {
+			expect(session, echo.getUUID());
+		}
+		session.echo = new WeakReference<>(echo);
+	}
+
+	void forget(PlayerSession session) {
+		if (session.echoId != null) {
+			sessionsByEcho.remove(session.echoId);
+		}
+		session.echoId = null;
+		session.echo = null;
+	}
+
+	/**
+	 * Links the entity if a session expects it.
+	 *
+	 * @return whether the entity is an expected echo
+	 */
+	boolean onLoad(ArmorStand entity) {
+		PlayerSession session = sessionsByEcho.get(entity.getUUID());
+		if (session == null) {
+			return false;
+		}
+		session.echo = new WeakReference<>(entity);
+		return true;
+	}
+
+	void onUnload(Entity entity) {
+		PlayerSession session = sessionsByEcho.get(entity.getUUID());
+		if (session != null) {
+			session.echo = null;
+		}
+	}
+}
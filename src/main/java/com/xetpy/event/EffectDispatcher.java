@@ -0,0 +1,103 @@
+package com.xetpy.event;
+
+import net.minecraft.core.particles.ParticleOptions;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.ClientboundBundlePacket;
+import net.minecraft.network.protocol.game.ClientboundLevelParticlesPacket;
+import net.minecraft.network.protocol.game.ClientboundSoundPacket;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.sounds.SoundEvent;
+import net.minecraft.sounds.SoundSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the event's sounds and particles to the player they belong to instead of broadcasting them to everyone nearby.
+ * Effects queued during a tick go out together in one bundle per player at the end of the tick. One-shot sounds mark
+ * an outcome and are always sent; particles and ambient sounds such as the heartbeat fill the rest of the per-player
+ * packet budget and are dropped beyond it, since they repeat anyway.
+ */
+final class EffectDispatcher {
+	private final List<PlayerSession> pending = new ArrayList<>();
+	private long droppedPackets;
+
+	void sound(ServerPlayer player, SoundEvent sound, double x, double y, double z, float volume, float pitch) {
+		queue(player, soundPacket(player, sound, x, y, z, volume, pitch), false);
+	}
+
+	void ambientSound(ServerPlayer player, SoundEvent sound, double x, double y, double z, float volume, float pitch) {
+		queue(player, soundPacket(player, sound, x, y, z, volume, pitch), true);
+	}
+
+	private static ClientboundSoundPacket soundPacket(ServerPlayer player, SoundEvent sound, double x, double y, double z, float volume, float pitch) {
+		return new ClientboundSoundPacket(
+			BuiltInRegistries.SOUND_EVENT.wrapAsHolder(sound),
+			SoundSource.PLAYERS,
+			x,
+			y,
+			z,
+			volume,
+			pitch,
+			player.getRandom().nextLong()
+		);
+	}
+
+	void particles(ServerPlayer player, ParticleOptions particle, double x, double y, double z, int count, double spreadX, double spreadY, double spreadZ, double speed) {
+		queue(player, new ClientboundLevelParticlesPacket(
+			particle,
+			false,
+			false,
+			x,
+			y,
+			z,
+			(float) spreadX,
+			(float) spreadY,
+			(float) spreadZ,
+			(float) speed,
+			count
+		), true);
+	}
+
+	private void queue(ServerPlayer player, Packet<? super ClientGamePacketListener> packet, boolean ambient) {
+		PlayerSession session = PlayerSession.of(player);
+		if (session == null) {
+			player.connection.send(packet);
+			return;
+		}
+		if (session.pendingEffects.isEmpty()) {
+			pending.add(session);
+		}
+		session.pendingEffects.add(packet, ambient);
+	}
+
+	/**
+	 * Sends what was queued this tick: every one-shot effect, then ambient effects up to {@code packetBudget} packets per player in total.
+	 */
+	void flush(int packetBudget) {
+		for (PlayerSession session : pending) {
+			droppedPackets += session.pendingEffects.overflow(packetBudget);
+			List<Packet<? super ClientGamePacketListener>> effects = session.pendingEffects.drain(packetBudget);
+			if (session.player.hasDisconnected() || effects.isEmpty()) {
+				continue;
+			}
+			if (effects.size() == 1) {
+				session.player.connection.send(effects.get(0));
+			} else {
+				session.player.connection.send(new ClientboundBundlePacket(effects));
+			}
+		}
+		pending.clear();
+	}
+
+	void forget(PlayerSession session) {
+		session.pendingEffects.clear();
+		pending.remove(session);
+	}
+
+	long droppedPackets() {
+		return droppedPackets;
+	}
+}
@@ -0,0 +1,49 @@
+package com.xetpy.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Effects queued for one player during a tick. One-shot effects always go out; ambient ones fill whatever is left
+ * of the packet budget, in the order they were queued.
+ */
+final class EffectQueue<T> {
+	private final List<T> oneShot = new ArrayList<>();
+	private final List<T> ambient = new ArrayList<>();
+
+	void add(T effect, boolean isAmbient) {
+		(isAmbient ? ambient : oneShot).add(effect);
+	}
+
+	boolean isEmpty() {
+		return oneShot.isEmpty() && ambient.isEmpty();
+	}
+
+	/**
+	 * Number of ambient effects that will not fit the budget.
+	 */
+	int overflow(int packetBudget) {
+		return ambient.size() - ambientFitting(packetBudget);
+	}
+
+	/**
+	 * Returns what fits the budget as a new list, one-shot effects first, and empties the queue.
+	 */
+	List<T> drain(int packetBudget) {
+		int ambientSent = ambientFitting(packetBudget);
+		List<T> sent = new ArrayList<>(oneShot.size() + ambientSent);
+		sent.addAll(oneShot);
+		sent.addAll(ambient.subList(0, ambientSent));
+		clear();
+		return sent;
+	}
+
+	void clear() {
+		oneShot.clear();
+		ambient.clear();
+	}
+
+	private int ambientFitting(int packetBudget) {
+		return Math.min(ambient.size(), Math.max(0, packetBudget - oneShot.size()));
+	}
+}
@@ -0,0 +1,260 @@
+package com.xetpy.event;
+
+import com.xetpy.HardcoreUnique;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.border.WorldBorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which chunks of one dimension exist on disk, read from the location tables in the region file headers.
+ * Built in the background on first use and cached next to the dimension's data, keyed by region file
+ * modification time and size, so a restart only re-reads the headers of regions that changed.
+ * Chunks generated after the build are simply unknown to the index until the next server start.
+ * Only chunks whose four neighbours are generated too are kept for sampling, one bit mask per region.
+ */
+final class GeneratedChunkIndex {
+	private static final int CACHE_MAGIC = 0x54594349;
+	private static final int CACHE_VERSION = 1;
+	private static final int HEADER_BYTES = 4096;
+	private static final int MASK_WORDS = 1024 / Long.SIZE;
+	private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+	private final Path regionDirectory;
+	private final Path cacheFile;
+	// Region key to the mask of its chunks that are generated along with their four neighbours; regions without any are left out.
+	private volatile Map<Long, long[]> interior;
+	private CompletableFuture<Void> build;
+
+	GeneratedChunkIndex(Path regionDirectory, Path cacheFile) {
+		this.regionDirectory = regionDirectory;
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Returns whether the index can be queried, starting the background build on the first call.
+	 */
+	boolean isReady(Executor executor) {
+		if (interior != null) {
+			return true;
+		}
+		if (build == null) {
+			build = CompletableFuture.runAsync(this::build, executor).exceptionally(throwable -> {
+				HardcoreUnique.LOGGER.error("Failed to index generated chunks in {}", regionDirectory, throwable);
+				interior = Map.of();
+				return null;
+			});
+		}
+		return false;
+	}
+
+	/**
+	 * Picks a uniformly random generated chunk whose center lies between {@code minDistance} and {@code maxDistance}
+	 * blocks of the origin, inside the world border, and whose four neighbours are generated as well,
+	 * so the chunk lies inside the generated area rather than on its edge. Returns null if there is none.
+	 * Only the regions overlapping the search square are looked up, and within them only the candidate bits are visited.
+	 */
+	ChunkPos sample(int originX, int originZ, int minDistance, int maxDistance, WorldBorder border, RandomSource random) {
+		long minSq = (long) minDistance * minDistance;
+		long maxSq = (long) maxDistance * maxDistance;
+		int minRegionX = (originX - maxDistance) >> 9;
+		int maxRegionX = (originX + maxDistance) >> 9;
+		int minRegionZ = (originZ - maxDistance) >> 9;
+		int maxRegionZ = (originZ + maxDistance) >> 9;
+		ChunkPos chosen = null;
+		int candidates = 0;
+		for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+			for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+				long[] mask = interior.get(ChunkPos.asLong(regionX, regionZ));
+				if (mask == null) {
+					continue;
+				}
+				for (int word = 0; word < MASK_WORDS; word++) {
+					for (long bits = mask[word]; bits != 0L; bits &= bits - 1L) {
+						int index = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+						int chunkX = (regionX << 5) + (index & 31);
+						int chunkZ = (regionZ << 5) + (index >>> 5);
+						long dx = (chunkX << 4) + 8 - originX;
+						long dz = (chunkZ << 4) + 8 - originZ;
+						long distanceSq = dx * dx + dz * dz;
+						if (distanceSq < minSq || distanceSq > maxSq) {
+							continue;
+						}
+						ChunkPos pos = new ChunkPos(chunkX, chunkZ);
+						if (!border.isWithinBounds(pos)) {
+							continue;
+						}
+						candidates++;
+						if (random.nextInt(candidates) == 0) {
+							chosen = pos;
+						}
+					}
+				}
+			}
+		}
+		return chosen;
+	}
+
+	// Runs once per build on the background thread, so sampling never has to look at neighbours.
+	private static Map<Long, long[]> interiorMasks(Map<Long, Region> regions) {
+		Map<Long, long[]> result = new HashMap<>();
+		for (Region region : regions.values()) {
+			long[] mask = new long[MASK_WORDS];
+			boolean any = false;
+			for (int index = 0; index < 1024; index++) {
+				if ((region.mask[index >>> 6] & (1L << (index & 63))) == 0L) {
+					continue;
+				}
+				int chunkX = (region.x << 5) + (index & 31);
+				int chunkZ = (region.z << 5) + (index >>> 5);
+				if (contains(regions, chunkX + 1, chunkZ)
+					&& contains(regions, chunkX - 1, chunkZ)
+					&& contains(regions, chunkX, chunkZ + 1)
+					&& contains(regions, chunkX, chunkZ - 1)) {
+					mask[index >>> 6] |= 1L << (index & 63);
+					any = true;
+				}
+			}
+			if (any) {
+				result.put(ChunkPos.asLong(region.x, region.z), mask);
+			}
+		}
+		return result;
+	}
+
+	private static boolean contains(Map<Long, Region> regions, int chunkX, int chunkZ) {
+		Region region = regions.get(ChunkPos.asLong(chunkX >> 5, chunkZ >> 5));
+		if (region == null) {
+			return false;
+		}
+		int index = (chunkX & 31) + (chunkZ & 31) * 32;
+		return (region.mask[index >>> 6] & (1L << (index & 63))) != 0L;
+	}
+
+	private void build() {
+		Map<Long, Region> cached = readCache();
+		Map<Long, Region> built = new HashMap<>();
+		int reread = 0;
+		if (Files.isDirectory(regionDirectory)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(regionDirectory, "r.*.mca")) {
+				for (Path file : files) {
+					Matcher matcher = REGION_FILE.matcher(file.getFileName().toString());
+					if (!matcher.matches()) {
+						continue;
+					}
+					int regionX = Integer.parseInt(matcher.group(1));
+					int regionZ = Integer.parseInt(matcher.group(2));
+					long key = ChunkPos.asLong(regionX, regionZ);
+					long modified = Files.getLastModifiedTime(file).toMillis();
+					long size = Files.size(file);
+					Region region = cached.get(key);
+					if (region == null || region.modified != modified || region.size != size) {
+						region = new Region(regionX, regionZ, modified, size, readHeaderMask(file));
+						reread++;
+					}
+					built.put(key, region);
+				}
+			} catch (IOException exception) {
+				HardcoreUnique.LOGGER.error("Failed to list region files in {}", regionDirectory, exception);
+			}
+		}
+		interior = interiorMasks(built);
+		if (reread > 0 || built.size() != cached.size()) {
+			writeCache(built);
+		}
+		HardcoreUnique.LOGGER.info("Indexed generated chunks in {}: {} regions, {} re-read", regionDirectory, built.size(), reread);
+	}
+
+	private static long[] readHeaderMask(Path file) throws IOException {
+		long[] mask = new long[MASK_WORDS];
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// Keep reading until the header is complete or the file ends.
+			}
+		}
+		header.flip();
+		// Each entry holds the sector offset and count of one chunk; zero means the chunk was never saved.
+		for (int index = 0; index < 1024 && header.remaining() >= Integer.BYTES; index++) {
+			if (header.getInt() != 0) {
+				mask[index >>> 6] |= 1L << (index & 63);
+			}
+		}
+		return mask;
+	}
+
+	private Map<Long, Region> readCache() {
+		Map<Long, Region> cached = new HashMap<>();
+		try (InputStream stream = Files.newInputStream(cacheFile); DataInputStream in = new DataInputStream(stream)) {
+			if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION) {
+				return cached;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				int regionX = in.readInt();
+				int regionZ = in.readInt();
+				long modified = in.readLong();
+				long size = in.readLong();
+				long[] mask = new long[MASK_WORDS];
+				for (int word = 0; word < MASK_WORDS; word++) {
+					mask[word] = in.readLong();
+				}
+				cached.put(ChunkPos.asLong(regionX, regionZ), new Region(regionX, regionZ, modified, size, mask));
+			}
+		} catch (NoSuchFileException ignored) {
+			// First build for this dimension.
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.warn("Ignoring unreadable generated chunk index {}", cacheFile, exception);
+			cached.clear();
+		}
+		return cached;
+	}
+
+	private void writeCache(Map<Long, Region> built) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(CACHE_VERSION);
+				out.writeInt(built.size());
+				for (Region region : built.values()) {
+					out.writeInt(region.x);
+					out.writeInt(region.z);
+					out.writeLong(region.modified);
+					out.writeLong(region.size);
+					for (long word : region.mask) {
+						out.writeLong(word);
+					}
+				}
+			}
+			Files.createDirectories(cacheFile.getParent());
+			Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+			Files.write(temp, bytes.toByteArray());
+			Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.warn("Failed to cache generated chunk index {}", cacheFile, exception);
+		}
+	}
+
+	private record Region(int x, int z, long modified, long size, long[] mask) {
+	}
+}
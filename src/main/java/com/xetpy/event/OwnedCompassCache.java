@@ -0,0 +1,24 @@
+package com.xetpy.event;
+
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Remembers where a player's echo compass was last found.
+ * The entry stays valid while the inventory change counter and the stack in the remembered slot are unchanged,
+ * which lets the per-tick path skip the inventory scan.
+ */
+final class OwnedCompassCache {
+	static final int NO_SLOT = -1;
+
+	int inventoryVersion = -1;
+	int slot = NO_SLOT;
+	ItemStack stack = ItemStack.EMPTY;
+
+	boolean isValid(Inventory inventory) {
+		if (inventory.getTimesChanged() != inventoryVersion) {
+			return false;
+		}
+		return slot == NO_SLOT || inventory.getItem(slot) == stack;
+	}
+}
@@ -0,0 +1,109 @@
+package com.xetpy.event;
+
+import com.xetpy.state.TomorrowYouState;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.decoration.ArmorStand;
+import net.minecraft.world.item.ItemStack;
+
+import java.lang.ref.WeakReference;
+import java.util.UUID;
+
+/**
+ * Transient per-player state of the TomorrowYou event. One instance exists per online player,
+ * attached directly to the {@link ServerPlayer} and dropped on disconnect; nothing in here is persisted.
+ */
+public final class PlayerSession {
+	final UUID playerId;
+	final OwnedCompassCache compass = new OwnedCompassCache();
+	ServerPlayer player;
+	TomorrowYouState.PlayerTimelineData data;
+	// Cooldowns are absolute game times at which the action may fire again; 0 means ready.
+	long attackReadyAt;
+	long presenceSoundReadyAt;
+	long tomorrowXpPulseReadyAt;
+	int tomorrowProgressTicks;
+	// Game time of the next distance check; players far from their target are looked at only as often as they could close in.
+	// Zero while the player is inside a near band, which also exempts them from the tick budget.
+	long proximityCheckAt;
+	TickScheduler.Task compassTask;
+	boolean trackedActiveEvent;
+	boolean wakeQueued;
+	UUID echoId;
+	WeakReference<ArmorStand> echo;
+	boolean echoSpawnPending;
+	ServerLevel echoSpawnWorld;
+	long echoSpawnChunk;
+	// Id of the echo the owner's client is rendering, or null; clients with the mod get a phantom instead of an entity.
+	UUID phantomId;
+	final TraceRing trace = new TraceRing();
+	// Sounds and particles queued for this player during the current tick, sent by the EffectDispatcher.
+	final EffectQueue<Packet<? super ClientGamePacketListener>> pendingEffects = new EffectQueue<>();
+	// Last distance band written to the trace, so a player sitting in one band does not flood it; -1 before the first check.
+	int proximityBand = -1;
+
+	PlayerSession(ServerPlayer player) {
+		this.playerId = player.getUUID();
+		this.player = player;
+	}
+
+	/**
+	 * Returns the session of an online player, or null if the player has not joined yet or already left.
+	 */
+	public static PlayerSession of(ServerPlayer player) {
+		return ((PlayerSessionHolder) player).hardcoreUnique$getSession();
+	}
+
+	static void attach(ServerPlayer player, PlayerSession session) {
+		((PlayerSessionHolder) player).hardcoreUnique$setSession(session);
+	}
+
+	// The respawned player is a new entity with a new inventory, so the cached compass slot no longer applies.
+	void rebind(ServerPlayer newPlayer) {
+		player = newPlayer;
+		compass.inventoryVersion = -1;
+		compass.slot = OwnedCompassCache.NO_SLOT;
+		compass.stack = ItemStack.EMPTY;
+		proximityCheckAt = 0L;
+		proximityBand = -1;
+		phantomId = null;
+		attach(newPlayer, this);
+	}
+
+	/**
+	 * Returns the linked echo while it is loaded and alive, or null.
+	 */
+	ArmorStand echo() {
+		ArmorStand entity = echo == null ? null : echo.get();
+		return entity != null && entity.isAlive() ? entity : null;
+	}
+
+	boolean echoPresent() {
+		return phantomId != null || echo() != null;
+	}
+
+	void cancelCompassTask() {
+		if (compassTask != null) {
+			compassTask.cancel();
+			compassTask = null;
+		}
+	}
+
+	void resetEncounterCounters() {
+		attackReadyAt = 0L;
+		presenceSoundReadyAt = 0L;
+		tomorrowXpPulseReadyAt = 0L;
+		tomorrowProgressTicks = 0;
+		proximityCheckAt = 0L;
+		proximityBand = -1;
+	}
+
+	void traceBand(long gameTime, int band, double distanceSq) {
+		if (band != proximityBand) {
+			proximityBand = band;
+			trace.record(gameTime, TraceEvent.PROXIMITY_BAND, band, (long) distanceSq);
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.xetpy.event;
+
+/**
+ * Implemented on {@code ServerPlayer} by a mixin so the session is reachable without a map lookup.
+ */
+public interface PlayerSessionHolder {
+	PlayerSession hardcoreUnique$getSession();
+
+	void hardcoreUnique$setSession(PlayerSession session);
+}
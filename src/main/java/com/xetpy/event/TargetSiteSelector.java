@@ -0,0 +1,123 @@
+package com.xetpy.event;
+
+import com.xetpy.HardcoreUnique;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Registry;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.Identifier;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Finds the surface height of an event target without loading chunks on the server thread.
+ * The target chunk is requested with a ticket and the chunk system loads or generates it in the background;
+ * pending requests are polled once per tick. If the chunk is not ready before the deadline,
+ * the generator's height estimate for the column is used instead.
+ */
+final class TargetSiteSelector {
+	private static final Heightmap.Types HEIGHTMAP = Heightmap.Types.MOTION_BLOCKING_NO_LEAVES;
+	// Only loads the chunk; the timeout is a safety net, the ticket is removed as soon as the request completes.
+	private static final TicketType TICKET_TYPE = new TicketType(1200L, TicketType.FLAG_LOADING);
+
+	private final List<Request> requests = new ArrayList<>();
+
+	static void registerTicketType() {
+		Registry.register(BuiltInRegistries.TICKET_TYPE, Identifier.fromNamespaceAndPath(HardcoreUnique.MOD_ID, "target_site"), TICKET_TYPE);
+	}
+
+	void request(PlayerSession session, ServerLevel world, int x, int z, long deadline, Consumer<BlockPos> onSelected) {
+		Request request = new Request(session, world, x, z, deadline, onSelected);
+		world.getChunkSource().addTicketWithRadius(TICKET_TYPE, request.chunkPos, 0);
+		requests.add(request);
+	}
+
+	/**
+	 * Drops the pending request of the session, if any, without running its callback.
+	 */
+	void cancel(PlayerSession session) {
+		Iterator<Request> iterator = requests.iterator();
+		while (iterator.hasNext()) {
+			Request request = iterator.next();
+			if (request.session == session) {
+				request.release();
+				iterator.remove();
+			}
+		}
+	}
+
+	boolean isPending(PlayerSession session) {
+		for (Request request : requests) {
+			if (request.session == session) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void tick(long gameTime) {
+		if (requests.isEmpty()) {
+			return;
+		}
+		List<Runnable> completed = new ArrayList<>();
+		Iterator<Request> iterator = requests.iterator();
+		while (iterator.hasNext()) {
+			Request request = iterator.next();
+			ServerChunkCache chunkSource = request.world.getChunkSource();
+			LevelChunk chunk = chunkSource.getChunkNow(request.chunkPos.x, request.chunkPos.z);
+			int y;
+			if (chunk != null) {
+				y = chunk.getHeight(HEIGHTMAP, request.x & 15, request.z & 15) + 1;
+			} else if (gameTime >= request.deadline) {
+				y = chunkSource.getGenerator().getBaseHeight(request.x, request.z, HEIGHTMAP, request.world, chunkSource.randomState());
+			} else {
+				continue;
+			}
+			request.release();
+			iterator.remove();
+			BlockPos target = new BlockPos(request.x, clampY(request.world, y), request.z);
+			completed.add(() -> request.onSelected.accept(target));
+		}
+		completed.forEach(Runnable::run);
+	}
+
+	int pending() {
+		return requests.size();
+	}
+
+	private static int clampY(ServerLevel world, int y) {
+		return Math.max(world.getMinY(), Math.min(world.getMaxY(), y));
+	}
+
+	private static final class Request {
+		private final PlayerSession session;
+		private final ServerLevel world;
+		private final int x;
+		private final int z;
+		private final ChunkPos chunkPos;
+		private final long deadline;
+		private final Consumer<BlockPos> onSelected;
+
+		private Request(PlayerSession session, ServerLevel world, int x, int z, long deadline, Consumer<BlockPos> onSelected) {
+			this.session = session;
+			this.world = world;
+			this.x = x;
+			this.z = z;
+			this.chunkPos = new ChunkPos(x >> 4, z >> 4);
+			this.deadline = deadline;
+			this.onSelected = onSelected;
+		}
+
+		private void release() {
+			world.getChunkSource().removeTicketWithRadius(TICKET_TYPE, chunkPos, 0);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.xetpy.event;
+
+/**
+ * Time budget of one server tick for the manager's deferrable work. Urgent work always runs and counts against
+ * the budget like everything else; deferrable work checks {@link #hasTime()} and resumes on the next tick when it is out.
+ */
+public final class TickBudget {
+	private long tickStart;
+	private long deadline;
+	private boolean deferredThisTick;
+	private long lastTickNanos;
+	private long overrunTicks;
+	private long deferredTicks;
+	private long deferredTasks;
+
+	void begin(long budgetNanos) {
+		tickStart = System.nanoTime();
+		deadline = tickStart + budgetNanos;
+		deferredThisTick = false;
+	}
+
+	boolean hasTime() {
+		return System.nanoTime() - deadline < 0L;
+	}
+
+	void defer() {
+		deferredTasks++;
+		deferredThisTick = true;
+	}
+
+	void end() {
+		long now = System.nanoTime();
+		lastTickNanos = now - tickStart;
+		if (now - deadline > 0L) {
+			overrunTicks++;
+		}
+		if (deferredThisTick) {
+			deferredTicks++;
+		}
+	}
+
+	public long lastTickNanos() {
+		return lastTickNanos;
+	}
+
+	/**
+	 * Ticks that took longer than the budget, urgent work included.
+	 */
+	public long overrunTicks() {
+		return overrunTicks;
+	}
+
+	public long deferredTicks() {
+		return deferredTicks;
+	}
+
+	public long deferredTasks() {
+		return deferredTasks;
+	}
+}
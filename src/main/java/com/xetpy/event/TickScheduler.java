@@ -0,0 +1,117 @@
+package com.xetpy.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel keyed by game time. Tasks are stored under their absolute deadline and only the slots
+ * of the ticks that actually passed are visited, so the cost of a tick depends on what is due, not on what is pending.
+ * Deadlines further away than one revolution simply stay in their slot until a later pass reaches them.
+ * Not thread-safe; used from the server thread only.
+ */
+final class TickScheduler {
+	private static final int WHEEL_SIZE = 256;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+	private static final long NOT_STARTED = Long.MIN_VALUE;
+
+	private final List<List<Task>> slots = new ArrayList<>(WHEEL_SIZE);
+	private final List<Task> due = new ArrayList<>();
+	private long currentTick = NOT_STARTED;
+	private int pending;
+
+	TickScheduler() {
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			slots.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Schedules {@code action} for the first tick whose game time is at least {@code deadline}.
+	 * Deadlines that already passed fire on the next {@link #advance(long)}.
+	 */
+	Task schedule(long deadline, Runnable action) {
+		Task task = new Task(deadline, action);
+		long slotTick = currentTick != NOT_STARTED && deadline <= currentTick ? currentTick + 1 : deadline;
+		slots.get((int) (slotTick & WHEEL_MASK)).add(task);
+		pending++;
+		return task;
+	}
+
+	/**
+	 * Runs every task that became due up to and including {@code gameTime}. At least one due task runs;
+	 * once the budget is spent the rest are carried over to the next tick in their original order.
+	 */
+	void advance(long gameTime, TickBudget budget) {
+		if (currentTick != NOT_STARTED && gameTime <= currentTick) {
+			return;
+		}
+		if (currentTick == NOT_STARTED || gameTime - currentTick >= WHEEL_SIZE) {
+			for (List<Task> slot : slots) {
+				collectDue(slot, gameTime);
+			}
+		} else {
+			for (long tick = currentTick + 1; tick <= gameTime; tick++) {
+				collectDue(slots.get((int) (tick & WHEEL_MASK)), gameTime);
+			}
+		}
+		currentTick = gameTime;
+
+		// Actions run after collection so they can schedule follow-ups without touching a slot being iterated.
+		List<Task> nextSlot = slots.get((int) ((gameTime + 1) & WHEEL_MASK));
+		boolean ranAny = false;
+		for (int i = 0; i < due.size(); i++) {
+			Task task = due.get(i);
+			if (task.cancelled) {
+				continue;
+			}
+			if (ranAny && !budget.hasTime()) {
+				nextSlot.add(task);
+				pending++;
+				budget.defer();
+				continue;
+			}
+			task.cancelled = true;
+			task.action.run();
+			ranAny = true;
+		}
+		due.clear();
+	}
+
+	int pending() {
+		return pending;
+	}
+
+	private void collectDue(List<Task> slot, long gameTime) {
+		int kept = 0;
+		for (int i = 0; i < slot.size(); i++) {
+			Task task = slot.get(i);
+			if (task.cancelled) {
+				pending--;
+			} else if (task.deadline <= gameTime) {
+				pending--;
+				due.add(task);
+			} else {
+				slot.set(kept++, task);
+			}
+		}
+		slot.subList(kept, slot.size()).clear();
+	}
+
+	static final class Task {
+		final long deadline;
+		private final Runnable action;
+		private boolean cancelled;
+
+		private Task(long deadline, Runnable action) {
+			this.deadline = deadline;
+			this.action = action;
+		}
+
+		/**
+		 * Prevents the task from running. The slot entry is dropped lazily the next time its slot is visited.
+		 */
+		void cancel() {
+			cancelled = true;
+		}
+	}
+}
@@ -1,18 +1,33 @@
 package com.xetpy.event;
 
 import com.xetpy.HardcoreUnique;
-import com.xetpy.config.TomorrowYouConfig;
+import com.xetpy.command.TomorrowYouCommands;
+import com.xetpy.config.CompiledConfig;
+import com.xetpy.config.ConfigReloader;
+import com.xetpy.item.EchoCompass;
+import com.xetpy.item.EchoCompassData;
+import com.xetpy.item.ModDataComponents;
+import com.xetpy.metrics.TomorrowYouMetrics;
+import com.xetpy.network.EchoPhantomPayload;
+import com.xetpy.network.EchoPhantomRemovePayload;
 import com.xetpy.state.TomorrowYouState;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.entity.event.v1.EntitySleepEvents;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.ChatFormatting;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.GlobalPos;
 import net.minecraft.core.Holder;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.core.particles.ParticleTypes;
 import net.minecraft.core.registries.BuiltInRegistries;
-import net.minecraft.core.registries.Registries;
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.Identifier;
 import net.minecraft.resources.ResourceKey;
@@ -20,7 +35,6 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.sounds.SoundEvents;
-import net.minecraft.sounds.SoundSource;
 import net.minecraft.world.effect.MobEffectInstance;
 import net.minecraft.world.effect.MobEffects;
 import net.minecraft.world.entity.Entity;
@@ -28,18 +42,21 @@ import net.minecraft.world.entity.EntitySpawnReason;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.decoration.ArmorStand;
+import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
-import net.minecraft.world.item.component.CustomData;
 import net.minecraft.world.item.component.ItemLore;
-import net.minecraft.world.item.component.LodestoneTracker;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
-import net.minecraft.world.level.levelgen.Heightmap;
-import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
 
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -47,116 +64,435 @@ import java.util.UUID;
 
 public final class TomorrowYouManager {
 	private static final String NOTE_TITLE = "Странная записка";
-	private static final String COMPASS_TITLE = "Компас эха";
-
-	private static final String TAG_UNIQUE = "tomorrowYouUnique";
-	private static final String TAG_OWNER_UUID = "ownerUuid";
-	private static final String TAG_OWNER_NAME = "ownerName";
-	private static final String TAG_ISSUED_AT_GAME_TIME = "issuedAtGameTime";
-	private static final String TAG_ISSUED_AT_DAY = "issuedAtDay";
-	private static final String TAG_ARTIFACT_ID = "artifactId";
-	private static final String TAG_COMPASS_MODE = "compassMode";
-	private static final String TAG_CALIBRATE_AT = "calibrateAtGameTime";
-	private static final String TAG_LAST_CHAOS_UPDATE = "lastChaosUpdateGameTime";
-	private static final String TAG_TARGET_WORLD = "targetWorld";
-	private static final String TAG_TARGET_X = "targetX";
-	private static final String TAG_TARGET_Y = "targetY";
-	private static final String TAG_TARGET_Z = "targetZ";
-
-	private final TomorrowYouConfig config;
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+	private static final long MAX_PROXIMITY_RECHECK_TICKS = 100L;
+	// Where the vanish smoke appears, relative to the echo's feet; roughly chest height.
+	private static final double ECHO_CHEST_HEIGHT = 1.2D;
+
+	private final ConfigReloader configReloader;
+	// Refreshed from the reloader once per tick, so everything in one tick sees the same settings.
+	private CompiledConfig config;
 	private final TomorrowYouState state;
-	private final Map<UUID, Boolean> sleepingCache = new HashMap<>();
-	private final Map<UUID, Integer> attackCooldowns = new HashMap<>();
-	private final Map<UUID, Integer> presenceSoundCooldowns = new HashMap<>();
-	private final Map<UUID, Integer> tomorrowProgressTicks = new HashMap<>();
-	private final Map<UUID, Integer> tomorrowXpPulseCooldowns = new HashMap<>();
-
-	public TomorrowYouManager(TomorrowYouConfig config) {
-		this.config = config;
-		this.state = TomorrowYouState.load();
+	private final List<PlayerSession> activeEventPlayers = new ArrayList<>();
+	private final ArrayDeque<PlayerSession> pendingWakes = new ArrayDeque<>();
+	private final TickBudget budget = new TickBudget();
+	private int activeEventCursor;
+	private final TomorrowYouMetrics metrics = new TomorrowYouMetrics();
+	private final TickScheduler scheduler = new TickScheduler();
+	private final EchoTracker echoes = new EchoTracker();
+	private final EchoSpawnQueue echoSpawns = new EchoSpawnQueue();
+	private final TargetSiteSelector targetSites = new TargetSiteSelector();
+	private final EffectDispatcher effects = new EffectDispatcher();
+	private final Map<ResourceKey<Level>, GeneratedChunkIndex> generatedChunks = new HashMap<>();
+	private final List<ArmorStand> orphanEchoes = new ArrayList<>();
+
+	public TomorrowYouManager(ConfigReloader configReloader) {
+		this.configReloader = configReloader;
+		this.config = configReloader.current();
+		this.state = TomorrowYouState.load(config.historyRetentionPerPlayer);
 	}
 
 	public void register() {
+		TargetSiteSelector.registerTicketType();
 		ServerTickEvents.START_SERVER_TICK.register(this::onServerTick);
+		EntitySleepEvents.STOP_SLEEPING.register((entity, sleepingPos) -> {
+			if (entity instanceof ServerPlayer player) {
+				queueWake(player);
+			}
+		});
+		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> TomorrowYouCommands.register(dispatcher, this));
+		ServerLifecycleEvents.SERVER_STOPPING.register(server -> state.flush());
+		ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+			configReloader.start();
+			metrics.registerJmx();
+		});
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+			configReloader.stop();
+			generatedChunks.clear();
+			metrics.unregisterJmx();
+		});
+		ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> onPlayerJoin(handler.player, server));
+		ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> onPlayerLeave(handler.player));
+		ServerEntityEvents.ENTITY_LOAD.register(this::onEntityLoad);
+		ServerEntityEvents.ENTITY_UNLOAD.register((entity, world) -> echoes.onUnload(entity));
+		ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> echoSpawns.onChunkLoad(world, chunk.getPos()));
+		ServerPlayerEvents.COPY_FROM.register((oldPlayer, newPlayer, alive) -> {
+			PlayerSession session = PlayerSession.of(oldPlayer);
+			if (session != null) {
+				session.rebind(newPlayer);
+			}
+		});
 	}
 
-	private void onServerTick(MinecraftServer server) {
-		for (ServerPlayer player : server.getPlayerList().getPlayers()) {
-			handleWakeTrigger(player);
-			handleActiveEvent(player);
-			tickOwnedCompass(player);
-		}
-	}
-
-	private void handleWakeTrigger(ServerPlayer player) {
-		boolean isSleeping = player.isSleeping();
-		boolean wasSleeping = sleepingCache.getOrDefault(player.getUUID(), false);
-		sleepingCache.put(player.getUUID(), isSleeping);
-		if (config.debugVerboseLogs) {
-			HardcoreUnique.LOGGER.info(
-				"[TomorrowYou] wake check player={}, isSleeping={}, wasSleeping={}, debugForceEvent={}",
-				player.getName().getString(),
-				isSleeping,
-				wasSleeping,
-				config.debugForceEvent
-			);
-		}
-
-		// In normal mode event can only start right after waking up.
-		// In debugForceEvent mode we allow triggering while awake for easier debugging.
-		if (isSleeping || (!config.debugForceEvent && !wasSleeping)) {
-			if (config.debugVerboseLogs) {
-				HardcoreUnique.LOGGER.info("[TomorrowYou] skip: not a wake transition");
+	private void onPlayerJoin(ServerPlayer player, MinecraftServer server) {
+		PlayerSession session = new PlayerSession(player);
+		PlayerSession.attach(player, session);
+		state.requestLoad(session.playerId, server, data -> {
+			// The player may have left before the shard arrived; the session is detached then.
+			if (PlayerSession.of(session.player) != session) {
+				return;
+			}
+			session.data = data;
+			if (data.activeEvent != null) {
+				validateEventDimension(server, session, data.activeEvent);
+				linkLoadedEcho(server, session, data.activeEvent);
+				trackActiveEvent(session);
 			}
+		});
+		if (hasUnstableCompass(session)) {
+			scheduleCompass(session, player.level().getGameTime());
+		}
+	}
+
+	// The echo's chunk may have loaded before the owner joined; the load callback only links echoes that are already expected.
+	private void linkLoadedEcho(MinecraftServer server, PlayerSession session, TomorrowYouState.ActiveEvent event) {
+		if (event.echoEntityUuid == null) {
 			return;
 		}
+		echoes.expect(session, event.echoEntityUuid);
+		ServerLevel world = event.dimension() == null ? null : server.getLevel(event.dimension());
+		if (world != null && world.getEntity(event.echoEntityUuid) instanceof ArmorStand echo && echo.isAlive()) {
+			echoes.link(session, echo);
+		}
+	}
 
-		ServerLevel world = player.level();
-		TomorrowYouState.PlayerTimelineData data = state.getOrCreatePlayerData(player.getUUID());
-		if (data.activeEvent != null || data.completedEncounters >= config.maxEncountersPerPlayer) {
-			if (config.debugVerboseLogs) {
-				HardcoreUnique.LOGGER.info(
-					"[TomorrowYou] skip: activeEvent={}, completed={}, max={}",
-					data.activeEvent != null,
-					data.completedEncounters,
-					config.maxEncountersPerPlayer
-				);
+	/**
+	 * Links expected echoes and checks every other tagged echo against its owner's event. Echoes the event no longer
+	 * refers to were left behind by a crash or by an encounter that ended while their chunk was unloaded; they are
+	 * discarded on the next tick, since entities should not be removed from inside the load callback.
+	 * Chunks loaded at startup go through the same path, which sweeps them as the world comes up.
+	 */
+	private void onEntityLoad(Entity entity, ServerLevel world) {
+		if (!(entity instanceof ArmorStand echo) || echoes.onLoad(echo)) {
+			return;
+		}
+		UUID ownerId = EchoTracker.ownerOf(echo);
+		if (ownerId == null) {
+			return;
+		}
+		state.lookup(ownerId, world.getServer(), data -> {
+			TomorrowYouState.ActiveEvent event = data.activeEvent;
+			if (event != null && echo.getUUID().equals(event.echoEntityUuid)) {
+				return;
 			}
+			orphanEchoes.add(echo);
+		});
+	}
+
+	// A loaded event may point at a dimension that was removed since; it is reported once and then never matches.
+	private void validateEventDimension(MinecraftServer server, PlayerSession session, TomorrowYouState.ActiveEvent event) {
+		ResourceKey<Level> dimension = event.dimension();
+		if (dimension != null && server.getLevel(dimension) != null) {
 			return;
 		}
+		event.markDimensionMissing();
+		HardcoreUnique.LOGGER.warn(
+			"TomorrowYou event of {} targets missing dimension {}; it can only end by death or running out of levels",
+			session.player.getName().getString(),
+			event.worldKey
+		);
+	}
 
-		long gameTime = world.getGameTime();
-		long cooldownTicks = config.cooldownMinutes * 60L * 20L;
-		if (!config.debugForceEvent && data.lastTriggerGameTime != Long.MIN_VALUE && gameTime - data.lastTriggerGameTime < cooldownTicks) {
-			if (config.debugVerboseLogs) {
-				HardcoreUnique.LOGGER.info(
-					"[TomorrowYou] skip: cooldown active, elapsed={}, required={}",
-					gameTime - data.lastTriggerGameTime,
-					cooldownTicks
-				);
+	private void onPlayerLeave(ServerPlayer player) {
+		PlayerSession session = PlayerSession.of(player);
+		if (session != null) {
+			int index = activeEventPlayers.indexOf(session);
+			if (index >= 0) {
+				activeEventPlayers.remove(index);
+				untrackActiveEventAt(index);
+			}
+			session.trackedActiveEvent = false;
+			pendingWakes.remove(session);
+			session.wakeQueued = false;
+			session.cancelCompassTask();
+			echoes.forget(session);
+			echoSpawns.remove(session);
+			targetSites.cancel(session);
+			effects.forget(session);
+			PlayerSession.attach(player, null);
+		}
+		state.release(player.getUUID());
+	}
+
+	// Only players with an active event are visited every tick; compasses wake up through the scheduler when due.
+	private void onServerTick(MinecraftServer server) {
+		long tickStarted = System.nanoTime();
+		refreshConfig();
+		budget.begin(config.tickBudgetNanos);
+		long gameTime = server.overworld().getGameTime();
+		scheduler.advance(gameTime, budget);
+		long targetsStarted = System.nanoTime();
+		targetSites.tick(gameTime);
+		metrics.targetPoll.recordSince(targetsStarted);
+		if (!orphanEchoes.isEmpty()) {
+			for (ArmorStand echo : orphanEchoes) {
+				if (!echo.isRemoved()) {
+					HardcoreUnique.LOGGER.info("Discarding orphaned TomorrowYou echo {} at {}", echo.getUUID(), echo.blockPosition());
+					echo.discard();
+				}
 			}
+			orphanEchoes.clear();
+		}
+		echoSpawns.drain(this::spawnQueuedEcho);
+		tickActiveEvents();
+		tickPendingWakes();
+		long stateStarted = System.nanoTime();
+		state.tick(config.stateCompactionIntervalSeconds, config.stateOfflineCacheSize);
+		metrics.stateTick.recordSince(stateStarted);
+		effects.flush(config.effectPacketsPerPlayerPerTick);
+		budget.end();
+		if (gameTime % 20L == 0L) {
+			sampleGauges();
+		}
+		metrics.tick.recordSince(tickStarted);
+	}
+
+	private void refreshConfig() {
+		CompiledConfig latest = configReloader.current();
+		if (latest == config) {
 			return;
 		}
+		if (latest.historyRetentionPerPlayer != config.historyRetentionPerPlayer) {
+			state.setHistoryRetention(latest.historyRetentionPerPlayer);
+		}
+		config = latest;
+	}
 
-		double roll = world.random.nextDouble();
-		boolean passChance = config.debugForceEvent || roll <= config.wakeEventChance;
-		if (config.debugVerboseLogs) {
-			HardcoreUnique.LOGGER.info(
-				"[TomorrowYou] chance check: roll={}, chance={}, pass={}",
-				roll,
-				config.wakeEventChance,
-				passChance
-			);
+	private void sampleGauges() {
+		int liveEchoes = 0;
+		for (PlayerSession session : activeEventPlayers) {
+			if (session.echoPresent()) {
+				liveEchoes++;
+			}
 		}
-		if (!passChance) {
+		metrics.sampleGauges(
+			activeEventPlayers.size(),
+			liveEchoes,
+			state.cachedPlayerCount(),
+			pendingWakes.size(),
+			scheduler.pending(),
+			budget.overrunTicks(),
+			budget.deferredTasks()
+		);
+	}
+
+	/**
+	 * Players in a tick-accurate band (next to the echo or the tomorrow point) always run. Far-band checks that are due
+	 * run while the budget lasts, starting where the previous tick had to stop, so deferred players go first next time.
+	 */
+	private void tickActiveEvents() {
+		int size = activeEventPlayers.size();
+		if (size == 0) {
 			return;
 		}
+		int start = activeEventCursor < size ? activeEventCursor : 0;
+		int firstDeferred = -1;
+		boolean ranDeferrable = false;
+		for (int offset = 0; offset < size; offset++) {
+			int index = (start + offset) % size;
+			PlayerSession session = activeEventPlayers.get(index);
+			boolean urgent = session.proximityCheckAt == 0L;
+			if (!urgent && ranDeferrable && !budget.hasTime()) {
+				if (firstDeferred < 0) {
+					firstDeferred = index;
+				}
+				budget.defer();
+				continue;
+			}
+			long started = System.nanoTime();
+			handleActiveEvent(session);
+			metrics.activeEvent.recordSince(started);
+			ranDeferrable |= !urgent;
+		}
+		activeEventCursor = firstDeferred < 0 ? 0 : firstDeferred;
+		Iterator<PlayerSession> iterator = activeEventPlayers.iterator();
+		int index = 0;
+		while (iterator.hasNext()) {
+			PlayerSession session = iterator.next();
+			if (session.data.activeEvent == null) {
+				session.trackedActiveEvent = false;
+				iterator.remove();
+				untrackActiveEventAt(index);
+			} else {
+				index++;
+			}
+		}
+	}
+
+	// Keeps the cursor on the same player when an entry before it is removed.
+	private void untrackActiveEventAt(int index) {
+		if (index < activeEventCursor) {
+			activeEventCursor--;
+		}
+	}
+
+	// Everyone wakes up on the same tick when a night is skipped, so the rolls are spread over the following ticks.
+	private void tickPendingWakes() {
+		boolean ranAny = false;
+		while (!pendingWakes.isEmpty()) {
+			if (ranAny && !budget.hasTime()) {
+				budget.defer();
+				return;
+			}
+			PlayerSession session = pendingWakes.pollFirst();
+			session.wakeQueued = false;
+			handleWakeTrigger(session.player, false);
+			ranAny = true;
+		}
+	}
+
+	private void queueWake(ServerPlayer player) {
+		PlayerSession session = PlayerSession.of(player);
+		if (session != null && !session.wakeQueued) {
+			session.wakeQueued = true;
+			pendingWakes.addLast(session);
+		}
+	}
+
+	private void trackActiveEvent(PlayerSession session) {
+		if (!session.trackedActiveEvent) {
+			session.trackedActiveEvent = true;
+			activeEventPlayers.add(session);
+		}
+	}
+
+	public TickBudget tickBudget() {
+		return budget;
+	}
+
+	/**
+	 * Effect packets dropped so far because a player's per-tick budget was used up.
+	 */
+	public long droppedEffectPackets() {
+		return effects.droppedPackets();
+	}
+
+	public TomorrowYouMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the retained trace of an online player, oldest entry first, or null if the player has no session.
+	 */
+	public List<String> trace(ServerPlayer player) {
+		PlayerSession session = PlayerSession.of(player);
+		return session == null ? null : session.trace.lines();
+	}
+
+	private void dumpTrace(PlayerSession session, String outcome) {
+		List<String> lines = session.trace.lines();
+		HardcoreUnique.LOGGER.info(
+			"TomorrowYou encounter of {} ended with {}; last {} trace entries:",
+			session.player.getName().getString(),
+			outcome,
+			lines.size()
+		);
+		for (String line : lines) {
+			HardcoreUnique.LOGGER.info("  {}", line);
+		}
+	}
+
+	ConfigReloader configReloader() {
+		return configReloader;
+	}
+
+	/**
+	 * Starts an event for the player if the limits allow it. Runs when the player wakes up,
+	 * or from {@code /tomorrowyou force}, which skips the cooldown and the chance roll like debugForceEvent does.
+	 * The target site is resolved over the next ticks; the event is recorded and the note delivered when it is ready.
+	 *
+	 * @return whether an event was started
+	 */
+	public boolean handleWakeTrigger(ServerPlayer player, boolean forced) {
+		long started = System.nanoTime();
+		try {
+			return tryStartEvent(player, forced);
+		} finally {
+			metrics.wakeTrigger.recordSince(started);
+		}
+	}
+
+	private boolean tryStartEvent(ServerPlayer player, boolean forced) {
+		boolean bypassChecks = forced || config.debugForceEvent;
+		ServerLevel world = player.level();
+		PlayerSession session = PlayerSession.of(player);
+		TomorrowYouState.PlayerTimelineData data = session == null ? null : session.data;
+		if (data == null) {
+			return false;
+		}
+		long gameTime = world.getGameTime();
+		TraceRing trace = session.trace;
+		trace.record(gameTime, TraceEvent.WAKE_CHECK, forced ? 1L : 0L, config.debugForceEvent ? 1L : 0L);
+		if (data.activeEvent != null || targetSites.isPending(session)) {
+			trace.record(gameTime, TraceEvent.SKIP_EVENT_ACTIVE);
+			return false;
+		}
+		if (data.completedEncounters >= config.maxEncountersPerPlayer) {
+			trace.record(gameTime, TraceEvent.SKIP_LIMIT, data.completedEncounters, config.maxEncountersPerPlayer);
+			return false;
+		}
+
+		if (!bypassChecks && data.lastTriggerGameTime != Long.MIN_VALUE && gameTime - data.lastTriggerGameTime < config.cooldownTicks) {
+			trace.record(gameTime, TraceEvent.SKIP_COOLDOWN, gameTime - data.lastTriggerGameTime, config.cooldownTicks);
+			return false;
+		}
+
+		double roll = world.random.nextDouble();
+		boolean passChance = bypassChecks || roll <= config.wakeEventChance;
+		trace.record(gameTime, TraceEvent.CHANCE_ROLL, Double.doubleToRawLongBits(roll), passChance ? 1L : 0L);
+		if (!passChance) {
+			return false;
+		}
 
+		// The snapshot is taken now; the event is recorded and the note delivered once the target height is known.
 		TomorrowYouState.ActiveEvent event = createEvent(player);
-		data.activeEvent = event;
-		data.lastTriggerGameTime = gameTime;
-		state.save();
+		long targetStarted = System.nanoTime();
+		BlockPos column = pickTargetColumn(world, player.blockPosition());
+		metrics.targetPick.recordSince(targetStarted);
+		trace.record(gameTime, TraceEvent.TARGET_REQUESTED, column.getX(), column.getZ());
+		targetSites.request(session, world, column.getX(), column.getZ(), gameTime + config.targetSelectionTimeoutTicks, target -> startEvent(session, event, target, gameTime));
+		return true;
+	}
+
+	/**
+	 * Picks the x/z of a new target. With targetPreferGeneratedChunks the column is taken from a chunk that already
+	 * exists on disk; while that dimension's index is still being built, or when no generated chunk lies in range,
+	 * it falls back to a random angle and distance.
+	 */
+	private BlockPos pickTargetColumn(ServerLevel world, BlockPos origin) {
+		if (config.targetPreferGeneratedChunks) {
+			GeneratedChunkIndex index = generatedChunks.computeIfAbsent(world.dimension(), dimension -> createChunkIndex(world));
+			if (index.isReady(Util.backgroundExecutor())) {
+				ChunkPos chunk = index.sample(origin.getX(), origin.getZ(), config.targetMinDistance, config.targetMaxDistance, world.getWorldBorder(), world.random);
+				if (chunk != null) {
+					return new BlockPos(chunk.getBlockX(world.random.nextInt(16)), origin.getY(), chunk.getBlockZ(world.random.nextInt(16)));
+				}
+			}
+		}
+		double angle = world.random.nextDouble() * Math.PI * 2.0D;
+		int distance = config.targetMinDistance + world.random.nextInt(config.targetMaxDistance - config.targetMinDistance + 1);
+		int targetX = origin.getX() + (int) Math.round(Math.cos(angle) * distance);
+		int targetZ = origin.getZ() + (int) Math.round(Math.sin(angle) * distance);
+		return new BlockPos(targetX, origin.getY(), targetZ);
+	}
 
+	private GeneratedChunkIndex createChunkIndex(ServerLevel world) {
+		Path dimensionFolder = DimensionType.getStorageFolder(world.dimension(), world.getServer().getWorldPath(LevelResource.ROOT));
+		return new GeneratedChunkIndex(
+			dimensionFolder.resolve("region"),
+			dimensionFolder.resolve("data").resolve(HardcoreUnique.MOD_ID + ".generated-chunks.bin")
+		);
+	}
+
+	private void startEvent(PlayerSession session, TomorrowYouState.ActiveEvent event, BlockPos target, long triggerGameTime) {
+		event.targetX = target.getX();
+		event.targetY = target.getY();
+		event.targetZ = target.getZ();
+		state.startEvent(session.playerId, event, triggerGameTime);
+		trackActiveEvent(session);
+		session.trace.record(session.player.level().getGameTime(), TraceEvent.EVENT_STARTED, target.asLong(), 0L);
+
+		ServerPlayer player = session.player;
 		giveOrDrop(player, createCoordinatesNote(event.targetX, event.targetY, event.targetZ));
 		playForPlayer(player, SoundEvents.EXPERIENCE_ORB_PICKUP, 0.9F, 0.7F);
 		HardcoreUnique.LOGGER.info(
@@ -171,11 +507,7 @@ public final class TomorrowYouManager {
 	private TomorrowYouState.ActiveEvent createEvent(ServerPlayer player) {
 		TomorrowYouState.ActiveEvent event = new TomorrowYouState.ActiveEvent();
 		ServerLevel world = player.level();
-		BlockPos target = generateTarget(world, player.blockPosition());
-		event.worldKey = world.dimension().identifier().toString();
-		event.targetX = target.getX();
-		event.targetY = target.getY();
-		event.targetZ = target.getZ();
+		event.setDimension(world.dimension());
 		event.createdAt = world.getGameTime();
 		event.createdDay = getWorldDay(world);
 		event.firstVisitDone = false;
@@ -200,132 +532,159 @@ public final class TomorrowYouManager {
 		return event;
 	}
 
-	private void handleActiveEvent(ServerPlayer player) {
-		ServerLevel playerWorld = player.level();
-		TomorrowYouState.PlayerTimelineData data = state.getOrCreatePlayerData(player.getUUID());
-		TomorrowYouState.ActiveEvent event = data.activeEvent;
+	private void handleActiveEvent(PlayerSession session) {
+		ServerPlayer player = session.player;
+		TomorrowYouState.ActiveEvent event = session.data.activeEvent;
 		if (event == null) {
 			return;
 		}
 		if (player.isDeadOrDying()) {
-			finalizeEncounter(player, data, event, "player_died", false);
+			finalizeEncounter(session, event, "player_died", false);
 			return;
 		}
 		if (player.experienceLevel <= 0) {
-			finalizeEncounter(player, data, event, "no_levels_escape", false);
+			finalizeEncounter(session, event, "no_levels_escape", false);
 			return;
 		}
 
-		Identifier worldId = Identifier.tryParse(event.worldKey);
-		MinecraftServer server = player.level().getServer();
-		if (worldId == null || server == null) {
+		ServerLevel eventWorld = player.level();
+		if (eventWorld.dimension() != event.dimension()) {
+			// Nothing to measure until the player comes back, so this counts as the farthest band.
+			session.proximityCheckAt = eventWorld.getGameTime() + MAX_PROXIMITY_RECHECK_TICKS;
+			// The client drops its phantom with the old level; it is shown again when the player comes back.
+			session.phantomId = null;
+			session.traceBand(eventWorld.getGameTime(), TraceEvent.BAND_OTHER_DIMENSION, 0.0D);
 			return;
 		}
 
-		ResourceKey<Level> eventWorldKey = ResourceKey.create(Registries.DIMENSION, worldId);
-		ServerLevel eventWorld = server.getLevel(eventWorldKey);
-		if (eventWorld == null || !playerWorld.dimension().equals(eventWorld.dimension())) {
-			return;
+		if (session.proximityBand == TraceEvent.BAND_OTHER_DIMENSION) {
+			// Back from another dimension, possibly right next to the target: measure now.
+			session.proximityCheckAt = 0L;
 		}
 
 		BlockPos targetPos = new BlockPos(event.targetX, event.targetY, event.targetZ);
 		if (!event.firstVisitDone) {
-			handleFirstVisit(player, data, event, eventWorld, targetPos);
+			handleFirstVisit(session, event, eventWorld, targetPos);
 			return;
 		}
 
-		handleTomorrowVisit(player, data, event, targetPos);
+		handleTomorrowVisit(session, event, targetPos);
 	}
 
-	private void handleFirstVisit(ServerPlayer player, TomorrowYouState.PlayerTimelineData data, TomorrowYouState.ActiveEvent event, ServerLevel eventWorld, BlockPos targetPos) {
-		double distToTarget = player.position().distanceTo(Vec3.atCenterOf(targetPos));
-		if (distToTarget <= config.spawnRadius) {
-			ensureEchoSpawned(eventWorld, targetPos, event);
+	/**
+	 * Distance bands around the echo: far (outside spawnRadius, or outside heartbeat range once the echo stands),
+	 * approaching (inside spawnRadius while the echo spawns), attack (heartbeat range and attackRadius) and vanish.
+	 * Far players are re-checked only after the time they need to reach the next band; closer bands run every tick.
+	 */
+	private void handleFirstVisit(PlayerSession session, TomorrowYouState.ActiveEvent event, ServerLevel eventWorld, BlockPos targetPos) {
+		ServerPlayer player = session.player;
+		long gameTime = eventWorld.getGameTime();
+		if (gameTime < session.proximityCheckAt) {
+			return;
 		}
 
-		ArmorStand echo = findEcho(eventWorld, event.echoEntityUuid);
-		if (echo == null) {
+		if (!session.echoPresent()) {
+			double distSqToTarget = player.distanceToSqr(targetPos.getX() + 0.5D, targetPos.getY() + 0.5D, targetPos.getZ() + 0.5D);
+			if (distSqToTarget > config.spawnRadiusSq) {
+				session.traceBand(gameTime, TraceEvent.BAND_FAR, distSqToTarget);
+				session.proximityCheckAt = gameTime + recheckDelay(distSqToTarget, config.spawnRadius);
+				return;
+			}
+			session.traceBand(gameTime, TraceEvent.BAND_APPROACHING, distSqToTarget);
+			session.proximityCheckAt = 0L;
+			if (ServerPlayNetworking.canSend(player, EchoPhantomPayload.TYPE)) {
+				showPhantom(session, event, targetPos, gameTime);
+			} else if (!session.echoSpawnPending) {
+				echoSpawns.add(session, eventWorld, targetPos);
+				session.trace.record(gameTime, TraceEvent.ECHO_QUEUED);
+			}
 			return;
 		}
 
-		double distanceToEcho = player.position().distanceTo(echo.position());
-		if (distanceToEcho <= config.vanishRadius) {
-			eventWorld.sendParticles(ParticleTypes.SMOKE, echo.getX(), echo.getY(0.6D), echo.getZ(), 40, 0.4D, 0.8D, 0.4D, 0.02D);
+		// The echo never moves from the target, whether it is an entity or a client phantom.
+		double echoX = targetPos.getX() + 0.5D;
+		double echoZ = targetPos.getZ() + 0.5D;
+		double distSqToEcho = player.distanceToSqr(echoX, targetPos.getY(), echoZ);
+		if (distSqToEcho <= config.vanishRadiusSq) {
+			session.traceBand(gameTime, TraceEvent.BAND_VANISH, distSqToEcho);
+			effects.particles(player, ParticleTypes.SMOKE, echoX, targetPos.getY() + ECHO_CHEST_HEIGHT, echoZ, 40, 0.4D, 0.8D, 0.4D, 0.02D);
 			playForPlayer(player, SoundEvents.ENDERMAN_TELEPORT, 1.0F, 0.95F);
 			giveOrDrop(player, createTomorrowWarningNote());
 
-			echo.discard();
-			event.echoEntityUuid = null;
-			event.firstVisitDone = true;
-			event.resolvedOutcome = "first_visit_done";
-			attackCooldowns.remove(player.getUUID());
-			presenceSoundCooldowns.remove(player.getUUID());
-			state.save();
+			removeEcho(session);
+			state.markFirstVisitDone(player.getUUID());
+			session.trace.record(gameTime, TraceEvent.FIRST_VISIT_DONE);
+			session.attackReadyAt = 0L;
+			session.presenceSoundReadyAt = 0L;
 			return;
 		}
 
-		int pulseCooldown = presenceSoundCooldowns.getOrDefault(player.getUUID(), 0);
-		if (distanceToEcho <= config.attackRadius + 5) {
-			if (pulseCooldown <= 0) {
-				float pitch = 0.7F + (eventWorld.random.nextFloat() * 0.25F);
-				playForPlayer(player, SoundEvents.WARDEN_HEARTBEAT, 1.0F, pitch);
-				presenceSoundCooldowns.put(player.getUUID(), 35);
-			} else {
-				presenceSoundCooldowns.put(player.getUUID(), pulseCooldown - 1);
-			}
-		} else {
-			presenceSoundCooldowns.remove(player.getUUID());
+		if (distSqToEcho > config.heartbeatRadiusSq) {
+			session.traceBand(gameTime, TraceEvent.BAND_FAR, distSqToEcho);
+			session.presenceSoundReadyAt = 0L;
+			session.proximityCheckAt = gameTime + recheckDelay(distSqToEcho, config.heartbeatRadius);
+			return;
 		}
+		session.traceBand(gameTime, TraceEvent.BAND_HEARTBEAT, distSqToEcho);
+		session.proximityCheckAt = 0L;
 
-		if (distanceToEcho <= config.attackRadius) {
-			int cooldown = attackCooldowns.getOrDefault(player.getUUID(), 0);
-			if (cooldown <= 0) {
-				int levelLoss = Math.min(config.xpLevelsPerHit, player.experienceLevel);
-				if (levelLoss > 0) {
-					player.giveExperienceLevels(-levelLoss);
-					playForPlayer(player, SoundEvents.PLAYER_HURT_DROWN, 1.0F, 1.2F);
-					playForPlayer(player, SoundEvents.WARDEN_HEARTBEAT, 1.0F, 0.65F);
-				}
-				applyNegativeEffects(player, true);
-				attackCooldowns.put(player.getUUID(), config.attackCooldownTicks);
-			} else {
-				attackCooldowns.put(player.getUUID(), cooldown - 1);
+		if (gameTime >= session.presenceSoundReadyAt) {
+			float pitch = 0.7F + (eventWorld.random.nextFloat() * 0.25F);
+			playAmbientForPlayer(player, SoundEvents.WARDEN_HEARTBEAT, 1.0F, pitch);
+			session.presenceSoundReadyAt = gameTime + 35;
+		}
+
+		if (distSqToEcho <= config.attackRadiusSq && gameTime >= session.attackReadyAt) {
+			int levelLoss = Math.min(config.xpLevelsPerHit, player.experienceLevel);
+			if (levelLoss > 0) {
+				player.giveExperienceLevels(-levelLoss);
+				playForPlayer(player, SoundEvents.PLAYER_HURT_DROWN, 1.0F, 1.2F);
+				playForPlayer(player, SoundEvents.WARDEN_HEARTBEAT, 1.0F, 0.65F);
 			}
+			applyNegativeEffects(player, true);
+			session.attackReadyAt = gameTime + config.attackCooldownTicks;
+			session.trace.record(gameTime, TraceEvent.ATTACK, levelLoss, player.experienceLevel);
 		}
 	}
 
-	private void handleTomorrowVisit(ServerPlayer player, TomorrowYouState.PlayerTimelineData data, TomorrowYouState.ActiveEvent event, BlockPos targetPos) {
+	private void handleTomorrowVisit(PlayerSession session, TomorrowYouState.ActiveEvent event, BlockPos targetPos) {
+		ServerPlayer player = session.player;
 		long currentDay = getWorldDay(player.level());
 		if (currentDay < event.createdDay + 1) {
 			return;
 		}
 
-		double distToTarget = player.position().distanceTo(Vec3.atCenterOf(targetPos));
-		if (distToTarget > config.tomorrowTriggerRadius) {
-			tomorrowProgressTicks.remove(player.getUUID());
-			tomorrowXpPulseCooldowns.remove(player.getUUID());
+		long gameTime = player.level().getGameTime();
+		if (gameTime < session.proximityCheckAt) {
+			return;
+		}
+		double distSqToTarget = player.distanceToSqr(targetPos.getX() + 0.5D, targetPos.getY() + 0.5D, targetPos.getZ() + 0.5D);
+		if (distSqToTarget > config.tomorrowTriggerRadiusSq) {
+			session.traceBand(gameTime, TraceEvent.BAND_TOMORROW_FAR, distSqToTarget);
+			session.tomorrowProgressTicks = 0;
+			session.tomorrowXpPulseReadyAt = 0L;
+			session.proximityCheckAt = gameTime + recheckDelay(distSqToTarget, config.tomorrowTriggerRadius);
 			return;
 		}
 
-		int progress = tomorrowProgressTicks.getOrDefault(player.getUUID(), 0) + 1;
-		tomorrowProgressTicks.put(player.getUUID(), progress);
+		session.traceBand(gameTime, TraceEvent.BAND_TOMORROW_NEAR, distSqToTarget);
+		session.proximityCheckAt = 0L;
+		int progress = ++session.tomorrowProgressTicks;
 
-		player.level().sendParticles(ParticleTypes.PORTAL, player.getX(), player.getY() + 0.8D, player.getZ(), 8, 0.35D, 0.6D, 0.35D, 0.03D);
+		effects.particles(player, ParticleTypes.PORTAL, player.getX(), player.getY() + 0.8D, player.getZ(), 8, 0.35D, 0.6D, 0.35D, 0.03D);
 		if (progress % 20 == 0) {
-			playForPlayer(player, SoundEvents.WARDEN_HEARTBEAT, 1.0F, 0.75F);
+			playAmbientForPlayer(player, SoundEvents.WARDEN_HEARTBEAT, 1.0F, 0.75F);
 		}
 
-		int pulseCooldown = tomorrowXpPulseCooldowns.getOrDefault(player.getUUID(), 0);
-		if (pulseCooldown <= 0) {
+		if (gameTime >= session.tomorrowXpPulseReadyAt) {
 			int levelLoss = Math.min(config.tomorrowXpDrainPerPulse, player.experienceLevel);
 			if (levelLoss > 0) {
 				player.giveExperienceLevels(-levelLoss);
 				playForPlayer(player, SoundEvents.PLAYER_HURT_DROWN, 0.8F, 1.0F);
 			}
 			applyNegativeEffects(player, false);
-			tomorrowXpPulseCooldowns.put(player.getUUID(), config.tomorrowXpPulseTicks);
-		} else {
-			tomorrowXpPulseCooldowns.put(player.getUUID(), pulseCooldown - 1);
+			session.tomorrowXpPulseReadyAt = gameTime + config.tomorrowXpPulseTicks;
+			session.trace.record(gameTime, TraceEvent.TOMORROW_PULSE, progress, levelLoss);
 		}
 
 		if (progress < config.tomorrowBranchDurationTicks) {
@@ -339,21 +698,51 @@ public final class TomorrowYouManager {
 			if (config.compassRequiredLevels > 0) {
 				player.giveExperienceLevels(-config.compassRequiredLevels);
 			}
-			grantCompassArtifact(player, event, currentDay);
+			grantCompassArtifact(session, event, currentDay);
 		} else {
 			playForPlayer(player, SoundEvents.PLAYER_HURT_DROWN, 0.7F, 0.8F);
 		}
 
 		giveOrDrop(player, createAlreadyHereNote(gotCompass, enoughLevels));
 		playForPlayer(player, SoundEvents.ENDERMAN_TELEPORT, 1.0F, 0.9F);
-		finalizeEncounter(player, data, event, gotCompass ? "tomorrow_branch_compass" : "tomorrow_branch_no_compass", gotCompass);
+		finalizeEncounter(session, event, gotCompass ? "tomorrow_branch_compass" : "tomorrow_branch_no_compass", gotCompass);
 	}
 
-	private void ensureEchoSpawned(ServerLevel world, BlockPos targetPos, TomorrowYouState.ActiveEvent event) {
-		if (findEcho(world, event.echoEntityUuid) != null || !world.hasChunkAt(targetPos)) {
+	// The earliest tick at which a player this far outside the radius could have crossed it at the configured top speed.
+	private long recheckDelay(double distanceSq, double radius) {
+		long ticks = (long) ((Math.sqrt(distanceSq) - radius) / config.maxPlayerSpeedBlocksPerTick);
+		return Math.max(1L, Math.min(MAX_PROXIMITY_RECHECK_TICKS, ticks));
+	}
+
+	// Runs from the spawn queue once the target chunk and its entities are loaded; the event may have moved on in the meantime.
+	private void spawnQueuedEcho(PlayerSession session) {
+		TomorrowYouState.ActiveEvent event = session.data.activeEvent;
+		if (event == null || event.firstVisitDone || session.echoPresent() || session.player.level().dimension() != event.dimension()) {
 			return;
 		}
+		spawnEcho(session, session.player.level(), new BlockPos(event.targetX, event.targetY, event.targetZ), event);
+	}
 
+	/**
+	 * Shows the echo on the owner's client only. Nothing is spawned or persisted on the server: proximity is measured
+	 * against the target, and a client that reconnects or changes dimension gets the phantom again once in range.
+	 */
+	private void showPhantom(PlayerSession session, TomorrowYouState.ActiveEvent event, BlockPos targetPos, long gameTime) {
+		session.phantomId = UUID.randomUUID();
+		ServerPlayNetworking.send(session.player, new EchoPhantomPayload(
+			session.phantomId,
+			event.dimension().identifier(),
+			targetPos.getX() + 0.5D,
+			targetPos.getY(),
+			targetPos.getZ() + 0.5D,
+			event.playerNameAtCreation + " (Эхо)",
+			List.of(event.mainHandItem, event.offHandItem, event.headArmor, event.chestArmor, event.legsArmor, event.feetArmor)
+		));
+		effects.sound(session.player, SoundEvents.ENDERMAN_TELEPORT, targetPos.getX() + 0.5D, targetPos.getY(), targetPos.getZ() + 0.5D, 1.0F, 0.7F);
+		session.trace.record(gameTime, TraceEvent.ECHO_SPAWNED);
+	}
+
+	private void spawnEcho(PlayerSession session, ServerLevel world, BlockPos targetPos, TomorrowYouState.ActiveEvent event) {
 		ArmorStand echo = EntityType.ARMOR_STAND.create(world, EntitySpawnReason.EVENT);
 		if (echo == null) {
 			return;
@@ -365,18 +754,23 @@ public final class TomorrowYouManager {
 		echo.setNoGravity(true);
 		echo.setInvulnerable(true);
 		equipEchoFromSnapshot(echo, event);
+		EchoTracker.tag(echo, session.playerId);
+		// Linked before it enters the world so the load callback recognizes it instead of treating it as a stray.
+		echoes.link(session, echo);
 		world.addFreshEntity(echo);
-		world.playSound(null, echo.getX(), echo.getY(), echo.getZ(), SoundEvents.ENDERMAN_TELEPORT, SoundSource.PLAYERS, 1.0F, 0.7F);
+		session.trace.record(world.getGameTime(), TraceEvent.ECHO_SPAWNED);
+		effects.sound(session.player, SoundEvents.ENDERMAN_TELEPORT, echo.getX(), echo.getY(), echo.getZ(), 1.0F, 0.7F);
 
-		event.echoEntityUuid = echo.getUUID();
-		state.save();
+		state.markEchoSpawned(session.playerId, echo.getUUID());
 	}
 
-	private void grantCompassArtifact(ServerPlayer player, TomorrowYouState.ActiveEvent event, long issuedAtDay) {
-		ItemStack existing = findOwnedCompass(player);
+	private void grantCompassArtifact(PlayerSession session, TomorrowYouState.ActiveEvent event, long issuedAtDay) {
+		ServerPlayer player = session.player;
+		ItemStack existing = findOwnedCompass(session);
 		if (!existing.isEmpty()) {
 			if (config.updateExistingCompass) {
 				applyCompassMeta(existing, player, event, issuedAtDay);
+				scheduleCompass(session, player.level().getGameTime());
 				playForPlayer(player, SoundEvents.EXPERIENCE_ORB_PICKUP, 1.0F, 0.8F);
 			}
 			return;
@@ -384,144 +778,123 @@ public final class TomorrowYouManager {
 
 		ItemStack compass = new ItemStack(Items.COMPASS);
 		applyCompassMeta(compass, player, event, issuedAtDay);
+		scheduleCompass(session, player.level().getGameTime());
 		giveOrDrop(player, compass);
 		playForPlayer(player, SoundEvents.EXPERIENCE_ORB_PICKUP, 1.0F, 0.8F);
 	}
 
 	private void applyCompassMeta(ItemStack compass, ServerPlayer player, TomorrowYouState.ActiveEvent event, long issuedAtDay) {
-		CustomData customData = compass.get(DataComponents.CUSTOM_DATA);
-		CompoundTag tag = customData == null ? new CompoundTag() : customData.copyTag();
-
-		String previousArtifactId = tag.getStringOr(TAG_ARTIFACT_ID, "");
-		tag.putBoolean(TAG_UNIQUE, true);
-		tag.putString(TAG_OWNER_UUID, player.getUUID().toString());
-		tag.putString(TAG_OWNER_NAME, player.getName().getString());
-		tag.putLong(TAG_ISSUED_AT_GAME_TIME, player.level().getGameTime());
-		tag.putLong(TAG_ISSUED_AT_DAY, issuedAtDay);
-		tag.putString(TAG_ARTIFACT_ID, previousArtifactId.isEmpty() ? UUID.randomUUID().toString() : previousArtifactId);
-		tag.putString(TAG_COMPASS_MODE, "chaotic");
+		long gameTime = player.level().getGameTime();
 		long calibrateAt = config.compassUnstableTicks < 0
 			? Long.MAX_VALUE
-			: player.level().getGameTime() + config.compassUnstableTicks;
-		tag.putLong(TAG_CALIBRATE_AT, calibrateAt);
-		tag.putLong(TAG_LAST_CHAOS_UPDATE, Long.MIN_VALUE);
-		tag.putString(TAG_TARGET_WORLD, event.worldKey);
-		tag.putInt(TAG_TARGET_X, event.targetX);
-		tag.putInt(TAG_TARGET_Y, event.targetY);
-		tag.putInt(TAG_TARGET_Z, event.targetZ);
-		compass.set(DataComponents.CUSTOM_DATA, CustomData.of(tag));
-
-		compass.set(DataComponents.CUSTOM_NAME, Component.literal(COMPASS_TITLE).withStyle(ChatFormatting.AQUA));
-		updateCompassLore(compass, player.getName().getString(), issuedAtDay, new BlockPos(event.targetX, event.targetY, event.targetZ), false);
+			: gameTime + config.compassUnstableTicks;
+		ResourceKey<Level> targetWorld = event.dimension() == null ? player.level().dimension() : event.dimension();
+		BlockPos targetPos = new BlockPos(event.targetX, event.targetY, event.targetZ);
+		EchoCompass.issue(compass, player.getUUID(), player.getName().getString(), gameTime, issuedAtDay, calibrateAt, GlobalPos.of(targetWorld, targetPos));
 	}
 
-	private ItemStack findOwnedCompass(ServerPlayer player) {
-		String ownerUuid = player.getUUID().toString();
-		for (ItemStack stack : player.getInventory().getNonEquipmentItems()) {
-			if (isOwnedCompass(stack, ownerUuid)) {
-				return stack;
-			}
-		}
-		if (isOwnedCompass(player.getItemBySlot(EquipmentSlot.OFFHAND), ownerUuid)) {
-			return player.getItemBySlot(EquipmentSlot.OFFHAND);
+	private ItemStack findOwnedCompass(PlayerSession session) {
+		ServerPlayer player = session.player;
+		Inventory inventory = player.getInventory();
+		OwnedCompassCache cache = session.compass;
+		if (cache.isValid(inventory)) {
+			return cache.stack;
 		}
-		return ItemStack.EMPTY;
-	}
 
-	private boolean isOwnedCompass(ItemStack stack, String ownerUuid) {
-		if (stack.isEmpty() || !isCompassLike(stack.getItem())) {
-			return false;
+		cache.inventoryVersion = inventory.getTimesChanged();
+		cache.slot = OwnedCompassCache.NO_SLOT;
+		cache.stack = ItemStack.EMPTY;
+		List<ItemStack> items = inventory.getNonEquipmentItems();
+		for (int slot = 0; slot < items.size(); slot++) {
+			if (isOwnedCompass(player, items.get(slot))) {
+				cache.slot = slot;
+				cache.stack = items.get(slot);
+				return cache.stack;
+			}
 		}
-
-		CustomData customData = stack.get(DataComponents.CUSTOM_DATA);
-		if (customData == null) {
-			return false;
+		ItemStack offhand = inventory.getItem(Inventory.SLOT_OFFHAND);
+		if (isOwnedCompass(player, offhand)) {
+			cache.slot = Inventory.SLOT_OFFHAND;
+			cache.stack = offhand;
 		}
-		CompoundTag tag = customData.copyTag();
-		return tag.getBooleanOr(TAG_UNIQUE, false) && ownerUuid.equals(tag.getStringOr(TAG_OWNER_UUID, ""));
+		return cache.stack;
 	}
 
-	private void tickOwnedCompass(ServerPlayer player) {
-		ItemStack compass = findOwnedCompass(player);
-		if (compass.isEmpty()) {
-			return;
-		}
+	private boolean isOwnedCompass(ServerPlayer player, ItemStack stack) {
+		return EchoCompass.isOwnedBy(stack, player.getUUID(), player.level().dimension(), player.blockPosition());
+	}
 
-		CustomData customData = compass.get(DataComponents.CUSTOM_DATA);
-		if (customData == null) {
+	/**
+	 * Called whenever a stack lands in a player's inventory, whether handed out, picked up or taken from a container.
+	 * Restarts the compass task if the stack is the player's unstable echo compass and nothing is scheduled yet.
+	 */
+	public void onInventoryChanged(ServerPlayer player, ItemStack stack) {
+		if (!EchoCompass.isCompassLike(stack.getItem())) {
 			return;
 		}
-		CompoundTag tag = customData.copyTag();
-
-		String mode = tag.getStringOr(TAG_COMPASS_MODE, "chaotic");
-		if ("calibrated".equals(mode)) {
-			return;
+		PlayerSession session = PlayerSession.of(player);
+		if (session != null && session.compassTask == null && hasUnstableCompass(session)) {
+			scheduleCompass(session, player.level().getGameTime());
 		}
+	}
 
-		long gameTime = player.level().getGameTime();
-		long calibrateAt = tag.getLongOr(TAG_CALIBRATE_AT, Long.MAX_VALUE);
+	private boolean hasUnstableCompass(PlayerSession session) {
+		EchoCompassData data = findOwnedCompass(session).get(ModDataComponents.ECHO_COMPASS);
+		return data != null && !data.calibrated();
+	}
 
-		if (gameTime >= calibrateAt) {
-			Identifier targetWorldId = Identifier.tryParse(tag.getStringOr(TAG_TARGET_WORLD, player.level().dimension().identifier().toString()));
-			if (targetWorldId == null) {
-				return;
+	private void scheduleCompass(PlayerSession session, long deadline) {
+		session.cancelCompassTask();
+		session.compassTask = scheduler.schedule(deadline, () -> {
+			session.compassTask = null;
+			long started = System.nanoTime();
+			long next = tickOwnedCompass(session);
+			metrics.compass.recordSince(started);
+			if (next != NO_DEADLINE) {
+				scheduleCompass(session, next);
 			}
+		});
+	}
 
-			ResourceKey<Level> targetWorld = ResourceKey.create(Registries.DIMENSION, targetWorldId);
-			BlockPos targetPos = new BlockPos(
-				tag.getIntOr(TAG_TARGET_X, player.blockPosition().getX()),
-				tag.getIntOr(TAG_TARGET_Y, player.blockPosition().getY()),
-				tag.getIntOr(TAG_TARGET_Z, player.blockPosition().getZ())
-			);
-			setCompassTarget(compass, targetWorld, targetPos, false);
-			tag.putString(TAG_COMPASS_MODE, "calibrated");
-			compass.set(DataComponents.CUSTOM_DATA, CustomData.of(tag));
-
-			updateCompassLore(
-				compass,
-				tag.getStringOr(TAG_OWNER_NAME, player.getName().getString()),
-				tag.getLongOr(TAG_ISSUED_AT_DAY, gameTime / 24000L),
-				targetPos,
-				true
-			);
+	/**
+	 * Runs when the compass of the session is due: scrambles the needle or calibrates it.
+	 *
+	 * @return the game time at which the compass needs attention again, or {@link #NO_DEADLINE} once it is calibrated
+	 * or no longer in the inventory; {@link #onInventoryChanged} schedules it again when it comes back.
+	 */
+	private long tickOwnedCompass(PlayerSession session) {
+		ServerPlayer player = session.player;
+		ItemStack compass = findOwnedCompass(session);
+		EchoCompassData data = compass.get(ModDataComponents.ECHO_COMPASS);
+		long gameTime = player.level().getGameTime();
+		if (data == null || data.calibrated()) {
+			return NO_DEADLINE;
+		}
+
+		if (gameTime >= data.calibrateAt()) {
+			BlockPos targetPos = data.target().pos();
+			EchoCompass.setTarget(compass, data.target().dimension(), targetPos, false);
+			compass.set(ModDataComponents.ECHO_COMPASS, data.calibrate());
+			EchoCompass.updateLore(compass, data.ownerName(), data.issuedAtDay(), targetPos, true);
 			playForPlayer(player, SoundEvents.EXPERIENCE_ORB_PICKUP, 0.85F, 1.15F);
-			return;
+			return NO_DEADLINE;
 		}
 
-		long lastChaosUpdate = tag.getLongOr(TAG_LAST_CHAOS_UPDATE, Long.MIN_VALUE);
-		if (lastChaosUpdate != Long.MIN_VALUE && gameTime - lastChaosUpdate < config.compassChaosUpdateTicks) {
-			return;
+		if (data.lastChaosUpdate() != Long.MIN_VALUE && gameTime - data.lastChaosUpdate() < config.compassChaosUpdateTicks) {
+			return Math.min(data.lastChaosUpdate() + config.compassChaosUpdateTicks, data.calibrateAt());
 		}
 
 		int dx = player.level().random.nextInt(129) - 64;
 		int dz = player.level().random.nextInt(129) - 64;
 		int y = Math.max(player.level().getMinY(), Math.min(player.level().getMaxY(), player.blockPosition().getY()));
 		BlockPos randomTarget = new BlockPos(player.blockPosition().getX() + dx, y, player.blockPosition().getZ() + dz);
-		setCompassTarget(compass, player.level().dimension(), randomTarget, false);
-		tag.putLong(TAG_LAST_CHAOS_UPDATE, gameTime);
-		compass.set(DataComponents.CUSTOM_DATA, CustomData.of(tag));
-	}
-
-	private void setCompassTarget(ItemStack compass, ResourceKey<Level> dimension, BlockPos pos, boolean tracked) {
-		compass.set(DataComponents.LODESTONE_TRACKER, new LodestoneTracker(Optional.of(GlobalPos.of(dimension, pos)), tracked));
-	}
-
-	private void updateCompassLore(ItemStack compass, String ownerName, long issuedAtDay, BlockPos target, boolean calibrated) {
-		List<Component> lore = new ArrayList<>();
-		lore.add(Component.literal("Владелец: " + ownerName).withStyle(ChatFormatting.GRAY));
-		lore.add(Component.literal("День выдачи: " + issuedAtDay).withStyle(ChatFormatting.DARK_GRAY));
-		lore.add(Component.literal("Точка эха: " + target.getX() + " " + target.getY() + " " + target.getZ()).withStyle(ChatFormatting.DARK_GRAY));
-		lore.add(
-			Component.literal(
-				calibrated
-					? "Состояние: откалиброван, ведет к цели."
-					: "Состояние: нестабилен."
-			).withStyle(ChatFormatting.DARK_PURPLE)
-		);
-		compass.set(DataComponents.LORE, new ItemLore(lore));
+		EchoCompass.setTarget(compass, player.level().dimension(), randomTarget, false);
+		compass.set(ModDataComponents.ECHO_COMPASS, data.withLastChaosUpdate(gameTime));
+		return Math.min(gameTime + config.compassChaosUpdateTicks, data.calibrateAt());
 	}
 
-	private void finalizeEncounter(ServerPlayer player, TomorrowYouState.PlayerTimelineData data, TomorrowYouState.ActiveEvent event, String outcome, boolean gotCompass) {
+	private void finalizeEncounter(PlayerSession session, TomorrowYouState.ActiveEvent event, String outcome, boolean gotCompass) {
+		ServerPlayer player = session.player;
 		event.tomorrowBranchResolved = true;
 		event.resolvedOutcome = outcome;
 
@@ -534,41 +907,44 @@ public final class TomorrowYouManager {
 		record.resolvedDay = getWorldDay(player.level());
 		record.outcome = outcome;
 		record.gotCompass = gotCompass;
-		state.addHistory(player.getUUID(), record);
-
-		data.completedEncounters += 1;
-		data.activeEvent = null;
+		state.finalizeEncounter(player.getUUID(), record);
+		session.trace.record(player.level().getGameTime(), TraceEvent.ENCOUNTER_ENDED, gotCompass ? 1L : 0L, session.data.completedEncounters);
+		// Encounters that end without reaching the tomorrow branch are the ones worth a look afterwards.
+		if (config.debugVerboseLogs || !outcome.startsWith("tomorrow_branch")) {
+			dumpTrace(session, outcome);
+		}
 
-		attackCooldowns.remove(player.getUUID());
-		presenceSoundCooldowns.remove(player.getUUID());
-		tomorrowProgressTicks.remove(player.getUUID());
-		tomorrowXpPulseCooldowns.remove(player.getUUID());
-		discardEchoIfPresent(player.level(), event);
-		state.save();
+		session.resetEncounterCounters();
+		discardEchoIfPresent(session, event);
 	}
 
-	private void discardEchoIfPresent(ServerLevel world, TomorrowYouState.ActiveEvent event) {
-		ArmorStand echo = findEcho(world, event.echoEntityUuid);
-		if (echo != null) {
-			echo.discard();
-		}
+	private void discardEchoIfPresent(PlayerSession session, TomorrowYouState.ActiveEvent event) {
+		removeEcho(session);
 		event.echoEntityUuid = null;
 	}
 
-	private ArmorStand findEcho(ServerLevel world, UUID uuid) {
-		if (uuid == null) {
-			return null;
+	// An echo entity whose chunk is unloaded right now is discarded as an orphan when the chunk loads again.
+	private void removeEcho(PlayerSession session) {
+		ArmorStand echo = session.echo();
+		if (echo != null) {
+			echo.discard();
 		}
-		Entity entity = world.getEntity(uuid);
-		if (entity instanceof ArmorStand armorStand && armorStand.isAlive()) {
-			return armorStand;
+		echoes.forget(session);
+		echoSpawns.remove(session);
+		if (session.phantomId != null) {
+			if (!session.player.hasDisconnected()) {
+				ServerPlayNetworking.send(session.player, new EchoPhantomRemovePayload(session.phantomId));
+			}
+			session.phantomId = null;
 		}
-		return null;
 	}
 
 	private void playForPlayer(ServerPlayer player, net.minecraft.sounds.SoundEvent sound, float volume, float pitch) {
-		ServerLevel world = player.level();
-		world.playSound(null, player.getX(), player.getY(), player.getZ(), sound, SoundSource.PLAYERS, volume, pitch);
+		effects.sound(player, sound, player.getX(), player.getY(), player.getZ(), volume, pitch);
+	}
+
+	private void playAmbientForPlayer(ServerPlayer player, net.minecraft.sounds.SoundEvent sound, float volume, float pitch) {
+		effects.ambientSound(player, sound, player.getX(), player.getY(), player.getZ(), volume, pitch);
 	}
 
 	private void equipEchoFromSnapshot(ArmorStand echo, TomorrowYouState.ActiveEvent event) {
@@ -580,15 +956,6 @@ public final class TomorrowYouManager {
 		echo.setItemSlot(EquipmentSlot.FEET, stackFromId(event.feetArmor, 1));
 	}
 
-	private BlockPos generateTarget(ServerLevel world, BlockPos origin) {
-		double angle = world.random.nextDouble() * Math.PI * 2.0D;
-		int distance = config.targetMinDistance + world.random.nextInt(config.targetMaxDistance - config.targetMinDistance + 1);
-		int rawX = origin.getX() + (int) Math.round(Math.cos(angle) * distance);
-		int rawZ = origin.getZ() + (int) Math.round(Math.sin(angle) * distance);
-		int y = world.getHeight(Heightmap.Types.MOTION_BLOCKING_NO_LEAVES, rawX, rawZ);
-		return new BlockPos(rawX, y, rawZ);
-	}
-
 	private ItemStack createCoordinatesNote(int x, int y, int z) {
 		ItemStack stack = new ItemStack(Items.PAPER);
 		stack.set(DataComponents.CUSTOM_NAME, Component.literal(NOTE_TITLE).withStyle(ChatFormatting.GOLD));
@@ -626,10 +993,6 @@ public final class TomorrowYouManager {
 		return stack;
 	}
 
-	private boolean isCompassLike(Item item) {
-		return item == Items.COMPASS || item == Items.RECOVERY_COMPASS;
-	}
-
 	private long getWorldDay(ServerLevel world) {
 		return world.getDayTime() / 24000L;
 	}
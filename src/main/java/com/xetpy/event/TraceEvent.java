@@ -0,0 +1,54 @@
+package com.xetpy.event;
+
+import net.minecraft.core.BlockPos;
+
+import java.util.Locale;
+
+/**
+ * Kinds of entries in a {@link TraceRing}. Each entry carries two primitive arguments whose meaning depends on the kind;
+ * they are only turned into text when a trace is dumped.
+ */
+enum TraceEvent {
+	WAKE_CHECK((a, b) -> "forced=" + (a != 0L) + " debugForceEvent=" + (b != 0L)),
+	SKIP_EVENT_ACTIVE((a, b) -> "event already active or being placed"),
+	SKIP_LIMIT((a, b) -> "completed=" + a + " max=" + b),
+	SKIP_COOLDOWN((a, b) -> "elapsed=" + a + " required=" + b),
+	CHANCE_ROLL((a, b) -> String.format(Locale.ROOT, "roll=%.3f pass=%s", Double.longBitsToDouble(a), b != 0L)),
+	TARGET_REQUESTED((a, b) -> "x=" + a + " z=" + b),
+	EVENT_STARTED((a, b) -> "target=" + BlockPos.of(a).toShortString()),
+	PROXIMITY_BAND((a, b) -> "band=" + bandName((int) a) + " distance=" + (long) Math.sqrt(b)),
+	ECHO_QUEUED((a, b) -> ""),
+	ECHO_SPAWNED((a, b) -> ""),
+	FIRST_VISIT_DONE((a, b) -> ""),
+	ATTACK((a, b) -> "levelLoss=" + a + " levelsLeft=" + b),
+	TOMORROW_PULSE((a, b) -> "progress=" + a + " levelLoss=" + b),
+	ENCOUNTER_ENDED((a, b) -> "gotCompass=" + (a != 0L) + " completed=" + b);
+
+	static final int BAND_OTHER_DIMENSION = 0;
+	static final int BAND_FAR = 1;
+	static final int BAND_APPROACHING = 2;
+	static final int BAND_HEARTBEAT = 3;
+	static final int BAND_VANISH = 4;
+	static final int BAND_TOMORROW_FAR = 5;
+	static final int BAND_TOMORROW_NEAR = 6;
+	private static final String[] BAND_NAMES = {"other_dimension", "far", "approaching", "heartbeat", "vanish", "tomorrow_far", "tomorrow_near"};
+
+	private final Describer describer;
+
+	TraceEvent(Describer describer) {
+		this.describer = describer;
+	}
+
+	String describe(long a, long b) {
+		return describer.describe(a, b);
+	}
+
+	private static String bandName(int band) {
+		return band >= 0 && band < BAND_NAMES.length ? BAND_NAMES[band] : String.valueOf(band);
+	}
+
+	@FunctionalInterface
+	private interface Describer {
+		String describe(long a, long b);
+	}
+}
@@ -0,0 +1,49 @@
+package com.xetpy.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of the most recent trace entries of one player. Recording writes a few array slots and never
+ * allocates; text is produced only by {@link #lines()}, when someone asks for the trace.
+ */
+final class TraceRing {
+	static final int CAPACITY = 256;
+
+	private final long[] gameTimes = new long[CAPACITY];
+	private final TraceEvent[] events = new TraceEvent[CAPACITY];
+	private final long[] firstArgs = new long[CAPACITY];
+	private final long[] secondArgs = new long[CAPACITY];
+	private long recorded;
+
+	void record(long gameTime, TraceEvent event, long a, long b) {
+		int slot = (int) (recorded % CAPACITY);
+		gameTimes[slot] = gameTime;
+		events[slot] = event;
+		firstArgs[slot] = a;
+		secondArgs[slot] = b;
+		recorded++;
+	}
+
+	void record(long gameTime, TraceEvent event) {
+		record(gameTime, event, 0L, 0L);
+	}
+
+	long recorded() {
+		return recorded;
+	}
+
+	/**
+	 * Retained entries, oldest first.
+	 */
+	List<String> lines() {
+		int size = (int) Math.min(recorded, CAPACITY);
+		List<String> lines = new ArrayList<>(size);
+		for (long index = recorded - size; index < recorded; index++) {
+			int slot = (int) (index % CAPACITY);
+			String details = events[slot].describe(firstArgs[slot], secondArgs[slot]);
+			lines.add("t=" + gameTimes[slot] + " " + events[slot] + (details.isEmpty() ? "" : " " + details));
+		}
+		return lines;
+	}
+}
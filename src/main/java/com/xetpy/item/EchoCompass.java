@@ -0,0 +1,111 @@
+package com.xetpy.item;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.GlobalPos;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.CustomData;
+import net.minecraft.world.item.component.ItemLore;
+import net.minecraft.world.item.component.LodestoneTracker;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Stack-level operations on echo compasses. Kept free of player and world access so they can run outside a server.
+ */
+public final class EchoCompass {
+	public static final String TITLE = "Компас эха";
+
+	private EchoCompass() {
+	}
+
+	public static boolean isCompassLike(Item item) {
+		return item == Items.COMPASS || item == Items.RECOVERY_COMPASS;
+	}
+
+	/**
+	 * Writes fresh compass metadata, name and lore onto the stack. The artifact id of a re-issued compass is kept.
+	 */
+	public static void issue(ItemStack compass, UUID ownerId, String ownerName, long gameTime, long issuedAtDay, long calibrateAt, GlobalPos target) {
+		EchoCompassData previous = compass.get(ModDataComponents.ECHO_COMPASS);
+		compass.set(ModDataComponents.ECHO_COMPASS, new EchoCompassData(
+			ownerId,
+			ownerName,
+			gameTime,
+			issuedAtDay,
+			previous == null ? UUID.randomUUID() : previous.artifactId(),
+			false,
+			calibrateAt,
+			Long.MIN_VALUE,
+			target
+		));
+
+		compass.set(DataComponents.CUSTOM_NAME, Component.literal(TITLE).withStyle(ChatFormatting.AQUA));
+		updateLore(compass, ownerName, issuedAtDay, target.pos(), false);
+	}
+
+	/**
+	 * Checks whether the stack is an echo compass of the given player, migrating the legacy layout on the way.
+	 * The fallback position is used for legacy compasses that never recorded a target.
+	 */
+	public static boolean isOwnedBy(ItemStack stack, UUID playerId, ResourceKey<Level> fallbackDimension, BlockPos fallbackPos) {
+		if (stack.isEmpty() || !isCompassLike(stack.getItem())) {
+			return false;
+		}
+		EchoCompassData data = stack.get(ModDataComponents.ECHO_COMPASS);
+		if (data == null) {
+			data = migrateLegacy(stack, fallbackDimension, fallbackPos);
+		}
+		return data != null && data.isOwnedBy(playerId);
+	}
+
+	// Compasses issued before the component existed keep their metadata in CUSTOM_DATA; it is moved over the first time the stack is seen.
+	private static EchoCompassData migrateLegacy(ItemStack stack, ResourceKey<Level> fallbackDimension, BlockPos fallbackPos) {
+		CustomData customData = stack.get(DataComponents.CUSTOM_DATA);
+		if (customData == null) {
+			return null;
+		}
+		CompoundTag tag = customData.copyTag();
+		EchoCompassData data = EchoCompassData.fromLegacyTag(tag, fallbackDimension, fallbackPos);
+		if (data == null) {
+			return null;
+		}
+		EchoCompassData.removeLegacyTags(tag);
+		if (tag.isEmpty()) {
+			stack.remove(DataComponents.CUSTOM_DATA);
+		} else {
+			stack.set(DataComponents.CUSTOM_DATA, CustomData.of(tag));
+		}
+		stack.set(ModDataComponents.ECHO_COMPASS, data);
+		return data;
+	}
+
+	public static void setTarget(ItemStack compass, ResourceKey<Level> dimension, BlockPos pos, boolean tracked) {
+		compass.set(DataComponents.LODESTONE_TRACKER, new LodestoneTracker(Optional.of(GlobalPos.of(dimension, pos)), tracked));
+	}
+
+	public static void updateLore(ItemStack compass, String ownerName, long issuedAtDay, BlockPos target, boolean calibrated) {
+		List<Component> lore = new ArrayList<>();
+		lore.add(Component.literal("Владелец: " + ownerName).withStyle(ChatFormatting.GRAY));
+		lore.add(Component.literal("День выдачи: " + issuedAtDay).withStyle(ChatFormatting.DARK_GRAY));
+		lore.add(Component.literal("Точка эха: " + target.getX() + " " + target.getY() + " " + target.getZ()).withStyle(ChatFormatting.DARK_GRAY));
+		lore.add(
+			Component.literal(
+				calibrated
+					? "Состояние: откалиброван, ведет к цели."
+					: "Состояние: нестабилен."
+			).withStyle(ChatFormatting.DARK_PURPLE)
+		);
+		compass.set(DataComponents.LORE, new ItemLore(lore));
+	}
+}
@@ -0,0 +1,122 @@
+package com.xetpy.item;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.GlobalPos;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.Identifier;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import java.util.UUID;
+
+/**
+ * Metadata of an echo compass, stored in the {@link ModDataComponents#ECHO_COMPASS} component.
+ * {@code calibrateAt} is {@link Long#MAX_VALUE} for compasses that never calibrate,
+ * {@code lastChaosUpdate} is {@link Long#MIN_VALUE} until the needle has been scrambled once.
+ */
+public record EchoCompassData(
+	UUID ownerId,
+	String ownerName,
+	long issuedAtGameTime,
+	long issuedAtDay,
+	UUID artifactId,
+	boolean calibrated,
+	long calibrateAt,
+	long lastChaosUpdate,
+	GlobalPos target
+) {
+	public static final Codec<EchoCompassData> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+		UUIDUtil.CODEC.fieldOf("owner_id").forGetter(EchoCompassData::ownerId),
+		Codec.STRING.fieldOf("owner_name").forGetter(EchoCompassData::ownerName),
+		Codec.LONG.fieldOf("issued_at_game_time").forGetter(EchoCompassData::issuedAtGameTime),
+		Codec.LONG.fieldOf("issued_at_day").forGetter(EchoCompassData::issuedAtDay),
+		UUIDUtil.CODEC.fieldOf("artifact_id").forGetter(EchoCompassData::artifactId),
+		Codec.BOOL.optionalFieldOf("calibrated", false).forGetter(EchoCompassData::calibrated),
+		Codec.LONG.optionalFieldOf("calibrate_at", Long.MAX_VALUE).forGetter(EchoCompassData::calibrateAt),
+		Codec.LONG.optionalFieldOf("last_chaos_update", Long.MIN_VALUE).forGetter(EchoCompassData::lastChaosUpdate),
+		GlobalPos.CODEC.fieldOf("target").forGetter(EchoCompassData::target)
+	).apply(instance, EchoCompassData::new));
+
+	private static final String LEGACY_TAG_UNIQUE = "tomorrowYouUnique";
+	private static final String LEGACY_TAG_OWNER_UUID = "ownerUuid";
+	private static final String LEGACY_TAG_OWNER_NAME = "ownerName";
+	private static final String LEGACY_TAG_ISSUED_AT_GAME_TIME = "issuedAtGameTime";
+	private static final String LEGACY_TAG_ISSUED_AT_DAY = "issuedAtDay";
+	private static final String LEGACY_TAG_ARTIFACT_ID = "artifactId";
+	private static final String LEGACY_TAG_COMPASS_MODE = "compassMode";
+	private static final String LEGACY_TAG_CALIBRATE_AT = "calibrateAtGameTime";
+	private static final String LEGACY_TAG_LAST_CHAOS_UPDATE = "lastChaosUpdateGameTime";
+	private static final String LEGACY_TAG_TARGET_WORLD = "targetWorld";
+	private static final String LEGACY_TAG_TARGET_X = "targetX";
+	private static final String LEGACY_TAG_TARGET_Y = "targetY";
+	private static final String LEGACY_TAG_TARGET_Z = "targetZ";
+	private static final String[] LEGACY_TAGS = {
+		LEGACY_TAG_UNIQUE, LEGACY_TAG_OWNER_UUID, LEGACY_TAG_OWNER_NAME, LEGACY_TAG_ISSUED_AT_GAME_TIME, LEGACY_TAG_ISSUED_AT_DAY,
+		LEGACY_TAG_ARTIFACT_ID, LEGACY_TAG_COMPASS_MODE, LEGACY_TAG_CALIBRATE_AT, LEGACY_TAG_LAST_CHAOS_UPDATE,
+		LEGACY_TAG_TARGET_WORLD, LEGACY_TAG_TARGET_X, LEGACY_TAG_TARGET_Y, LEGACY_TAG_TARGET_Z
+	};
+
+	public boolean isOwnedBy(UUID playerId) {
+		return ownerId.equals(playerId);
+	}
+
+	public EchoCompassData calibrate() {
+		return new EchoCompassData(ownerId, ownerName, issuedAtGameTime, issuedAtDay, artifactId, true, calibrateAt, lastChaosUpdate, target);
+	}
+
+	public EchoCompassData withLastChaosUpdate(long gameTime) {
+		return new EchoCompassData(ownerId, ownerName, issuedAtGameTime, issuedAtDay, artifactId, calibrated, calibrateAt, gameTime, target);
+	}
+
+	public static boolean isLegacyTag(CompoundTag tag) {
+		return tag.getBooleanOr(LEGACY_TAG_UNIQUE, false);
+	}
+
+	/**
+	 * Reads the CUSTOM_DATA layout used before the component existed, or returns null if the tag is not a valid echo compass.
+	 */
+	public static EchoCompassData fromLegacyTag(CompoundTag tag, ResourceKey<Level> fallbackDimension, BlockPos fallbackPos) {
+		UUID ownerId = parseUuid(tag.getStringOr(LEGACY_TAG_OWNER_UUID, ""));
+		if (!isLegacyTag(tag) || ownerId == null) {
+			return null;
+		}
+		UUID artifactId = parseUuid(tag.getStringOr(LEGACY_TAG_ARTIFACT_ID, ""));
+		Identifier worldId = Identifier.tryParse(tag.getStringOr(LEGACY_TAG_TARGET_WORLD, ""));
+		ResourceKey<Level> dimension = worldId == null ? fallbackDimension : ResourceKey.create(Registries.DIMENSION, worldId);
+		BlockPos pos = new BlockPos(
+			tag.getIntOr(LEGACY_TAG_TARGET_X, fallbackPos.getX()),
+			tag.getIntOr(LEGACY_TAG_TARGET_Y, fallbackPos.getY()),
+			tag.getIntOr(LEGACY_TAG_TARGET_Z, fallbackPos.getZ())
+		);
+		long issuedAtGameTime = tag.getLongOr(LEGACY_TAG_ISSUED_AT_GAME_TIME, 0L);
+		return new EchoCompassData(
+			ownerId,
+			tag.getStringOr(LEGACY_TAG_OWNER_NAME, "Unknown"),
+			issuedAtGameTime,
+			tag.getLongOr(LEGACY_TAG_ISSUED_AT_DAY, issuedAtGameTime / 24000L),
+			artifactId == null ? UUID.randomUUID() : artifactId,
+			"calibrated".equals(tag.getStringOr(LEGACY_TAG_COMPASS_MODE, "chaotic")),
+			tag.getLongOr(LEGACY_TAG_CALIBRATE_AT, Long.MAX_VALUE),
+			tag.getLongOr(LEGACY_TAG_LAST_CHAOS_UPDATE, Long.MIN_VALUE),
+			GlobalPos.of(dimension, pos)
+		);
+	}
+
+	public static void removeLegacyTags(CompoundTag tag) {
+		for (String key : LEGACY_TAGS) {
+			tag.remove(key);
+		}
+	}
+
+	private static UUID parseUuid(String raw) {
+		try {
+			return raw.isEmpty() ? null : UUID.fromString(raw);
+		} catch (IllegalArgumentException ignored) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.xetpy.item;
+
+import com.xetpy.HardcoreUnique;
+import net.minecraft.core.Registry;
+import net.minecraft.core.component.DataComponentType;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.Identifier;
+
+public final class ModDataComponents {
+	// Saved with the stack but never sent: vanilla clients cannot decode a stack carrying an unknown component.
+	// What the client shows comes from the lodestone tracker, custom name and lore.
+	public static final DataComponentType<EchoCompassData> ECHO_COMPASS = DataComponentType.<EchoCompassData>builder()
+		.persistent(EchoCompassData.CODEC)
+		.build();
+
+	private ModDataComponents() {
+	}
+
+	public static void register() {
+		Registry.register(BuiltInRegistries.DATA_COMPONENT_TYPE, Identifier.fromNamespaceAndPath(HardcoreUnique.MOD_ID, "echo_compass"), ECHO_COMPASS);
+	}
+}
@@ -0,0 +1,20 @@
+package com.xetpy.metrics;
+
+/**
+ * JMX view of the sampled gauges and the tick budget counters.
+ */
+public interface GaugesMBean {
+	int getActiveEvents();
+
+	int getLiveEchoes();
+
+	int getCachedPlayerStates();
+
+	int getPendingWakes();
+
+	int getScheduledTasks();
+
+	long getOverrunTicks();
+
+	long getDeferredTasks();
+}
@@ -0,0 +1,14 @@
+package com.xetpy.metrics;
+
+/**
+ * JMX view of one timed phase; values cover the last minute.
+ */
+public interface PhaseStatsMBean {
+	long getCount();
+
+	long getP50Nanos();
+
+	long getP99Nanos();
+
+	long getMaxNanos();
+}
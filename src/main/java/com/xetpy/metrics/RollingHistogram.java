@@ -0,0 +1,104 @@
+package com.xetpy.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Latency histogram over the last minute, kept as 60 per-second slots of log-linear buckets
+ * (four buckets per power of two, so reported percentiles are within 25% of the true value).
+ * Recording is a clock read, a few bit operations and two array writes, with no allocation.
+ * Written from the server thread only; readers on other threads may see a slot that is mid-update.
+ */
+public final class RollingHistogram {
+	private static final int WINDOW_SECONDS = 60;
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private final int[][] counts = new int[WINDOW_SECONDS][BUCKETS];
+	private final long[] maxima = new long[WINDOW_SECONDS];
+	private final long[] slotSeconds = new long[WINDOW_SECONDS];
+
+	public RollingHistogram() {
+		Arrays.fill(slotSeconds, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Records the time elapsed since {@code startNanos}, a value previously read from {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos) {
+		long now = System.nanoTime();
+		long duration = Math.max(0L, now - startNanos);
+		long second = Math.floorDiv(now, NANOS_PER_SECOND);
+		int slot = (int) Math.floorMod(second, (long) WINDOW_SECONDS);
+		if (slotSeconds[slot] != second) {
+			Arrays.fill(counts[slot], 0);
+			maxima[slot] = 0L;
+			slotSeconds[slot] = second;
+		}
+		counts[slot][bucketOf(duration)]++;
+		if (duration > maxima[slot]) {
+			maxima[slot] = duration;
+		}
+	}
+
+	public Snapshot snapshot() {
+		long oldestSecond = Math.floorDiv(System.nanoTime(), NANOS_PER_SECOND) - WINDOW_SECONDS + 1;
+		long[] merged = new long[BUCKETS];
+		long total = 0L;
+		long max = 0L;
+		for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+			if (slotSeconds[slot] < oldestSecond) {
+				continue;
+			}
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				merged[bucket] += counts[slot][bucket];
+				total += counts[slot][bucket];
+			}
+			max = Math.max(max, maxima[slot]);
+		}
+		return new Snapshot(total, percentile(merged, total, 0.50D, max), percentile(merged, total, 0.99D, max), max);
+	}
+
+	private static long percentile(long[] merged, long total, double quantile, long max) {
+		if (total == 0L) {
+			return 0L;
+		}
+		long rank = (long) Math.ceil(total * quantile);
+		long seen = 0L;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += merged[bucket];
+			if (seen >= rank) {
+				return Math.min(max, upperBound(bucket));
+			}
+		}
+		return max;
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(value));
+		int mantissa = exponent == MAX_EXPONENT && value >= (1L << (MAX_EXPONENT + 1))
+			? SUB_BUCKETS - 1
+			: (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		int mantissa = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1L;
+	}
+
+	/**
+	 * Call count and latencies in nanoseconds over the last minute.
+	 */
+	public record Snapshot(long count, long p50Nanos, long p99Nanos, long maxNanos) {
+	}
+}
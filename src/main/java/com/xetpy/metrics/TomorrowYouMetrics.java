@@ -0,0 +1,177 @@
+package com.xetpy.metrics;
+
+import com.xetpy.HardcoreUnique;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Phase timers and gauges of the TomorrowYou tick loop. Timers are always on; gauges are sampled on the server thread
+ * about once a second and published through volatile fields, so JMX readers never touch game state.
+ */
+public final class TomorrowYouMetrics {
+	private static final String JMX_DOMAIN = "com.xetpy." + HardcoreUnique.MOD_ID;
+
+	public final RollingHistogram tick = new RollingHistogram();
+	public final RollingHistogram wakeTrigger = new RollingHistogram();
+	public final RollingHistogram activeEvent = new RollingHistogram();
+	public final RollingHistogram compass = new RollingHistogram();
+	// The per-tick poll of pending target chunks and the rarer, costlier column search per wake are kept apart.
+	public final RollingHistogram targetPoll = new RollingHistogram();
+	public final RollingHistogram targetPick = new RollingHistogram();
+	public final RollingHistogram stateTick = new RollingHistogram();
+
+	private final Map<String, RollingHistogram> phases = new LinkedHashMap<>();
+	private final List<ObjectName> registered = new ArrayList<>();
+
+	private volatile int activeEvents;
+	private volatile int liveEchoes;
+	private volatile int cachedPlayerStates;
+	private volatile int pendingWakes;
+	private volatile int scheduledTasks;
+	private volatile long overrunTicks;
+	private volatile long deferredTasks;
+
+	public TomorrowYouMetrics() {
+		phases.put("tick", tick);
+		phases.put("wake_trigger", wakeTrigger);
+		phases.put("active_event", activeEvent);
+		phases.put("compass", compass);
+		phases.put("target_poll", targetPoll);
+		phases.put("target_pick", targetPick);
+		phases.put("state", stateTick);
+	}
+
+	public Map<String, RollingHistogram> phases() {
+		return Collections.unmodifiableMap(phases);
+	}
+
+	public void sampleGauges(int activeEvents, int liveEchoes, int cachedPlayerStates, int pendingWakes, int scheduledTasks, long overrunTicks, long deferredTasks) {
+		this.activeEvents = activeEvents;
+		this.liveEchoes = liveEchoes;
+		this.cachedPlayerStates = cachedPlayerStates;
+		this.pendingWakes = pendingWakes;
+		this.scheduledTasks = scheduledTasks;
+		this.overrunTicks = overrunTicks;
+		this.deferredTasks = deferredTasks;
+	}
+
+	public int activeEvents() {
+		return activeEvents;
+	}
+
+	public int liveEchoes() {
+		return liveEchoes;
+	}
+
+	public int cachedPlayerStates() {
+		return cachedPlayerStates;
+	}
+
+	public int pendingWakes() {
+		return pendingWakes;
+	}
+
+	public int scheduledTasks() {
+		return scheduledTasks;
+	}
+
+	public void registerJmx() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (Map.Entry<String, RollingHistogram> phase : phases.entrySet()) {
+				register(server, new ObjectName(JMX_DOMAIN + ":type=Phase,name=" + phase.getKey()), new StandardMBean(new PhaseStats(phase.getValue()), PhaseStatsMBean.class));
+			}
+			register(server, new ObjectName(JMX_DOMAIN + ":type=Gauges"), new StandardMBean(new Gauges(), GaugesMBean.class));
+		} catch (JMException exception) {
+			HardcoreUnique.LOGGER.warn("Failed to register TomorrowYou MBeans", exception);
+		}
+	}
+
+	public void unregisterJmx() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException exception) {
+				HardcoreUnique.LOGGER.warn("Failed to unregister MBean {}", name, exception);
+			}
+		}
+		registered.clear();
+	}
+
+	private void register(MBeanServer server, ObjectName name, StandardMBean bean) throws JMException {
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+		server.registerMBean(bean, name);
+		registered.add(name);
+	}
+
+	private record PhaseStats(RollingHistogram histogram) implements PhaseStatsMBean {
+		@Override
+		public long getCount() {
+			return histogram.snapshot().count();
+		}
+
+		@Override
+		public long getP50Nanos() {
+			return histogram.snapshot().p50Nanos();
+		}
+
+		@Override
+		public long getP99Nanos() {
+			return histogram.snapshot().p99Nanos();
+		}
+
+		@Override
+		public long getMaxNanos() {
+			return histogram.snapshot().maxNanos();
+		}
+	}
+
+	private final class Gauges implements GaugesMBean {
+		@Override
+		public int getActiveEvents() {
+			return activeEvents;
+		}
+
+		@Override
+		public int getLiveEchoes() {
+			return liveEchoes;
+		}
+
+		@Override
+		public int getCachedPlayerStates() {
+			return cachedPlayerStates;
+		}
+
+		@Override
+		public int getPendingWakes() {
+			return pendingWakes;
+		}
+
+		@Override
+		public int getScheduledTasks() {
+			return scheduledTasks;
+		}
+
+		@Override
+		public long getOverrunTicks() {
+			return overrunTicks;
+		}
+
+		@Override
+		public long getDeferredTasks() {
+			return deferredTasks;
+		}
+	}
+}
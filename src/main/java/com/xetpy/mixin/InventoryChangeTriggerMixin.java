@@ -0,0 +1,24 @@
+package com.xetpy.mixin;
+
+import com.xetpy.HardcoreUnique;
+import com.xetpy.event.TomorrowYouManager;
+import net.minecraft.advancements.criterion.InventoryChangeTrigger;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.item.ItemStack;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+// Vanilla fires this trigger for every stack that enters a player's inventory, however it got there.
+@Mixin(InventoryChangeTrigger.class)
+public class InventoryChangeTriggerMixin {
+	@Inject(at = @At("HEAD"), method = "trigger(Lnet/minecraft/server/level/ServerPlayer;Lnet/minecraft/world/entity/player/Inventory;Lnet/minecraft/world/item/ItemStack;)V")
+	private void hardcoreUnique$onInventoryChanged(ServerPlayer player, Inventory inventory, ItemStack stack, CallbackInfo info) {
+		TomorrowYouManager manager = HardcoreUnique.tomorrowYou();
+		if (manager != null) {
+			manager.onInventoryChanged(player, stack);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.xetpy.mixin;
+
+import com.xetpy.event.PlayerSession;
+import com.xetpy.event.PlayerSessionHolder;
+import net.minecraft.server.level.ServerPlayer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+@Mixin(ServerPlayer.class)
+public class ServerPlayerMixin implements PlayerSessionHolder {
+	@Unique
+	private PlayerSession hardcoreUnique$session;
+
+	@Override
+	public PlayerSession hardcoreUnique$getSession() {
+		return hardcoreUnique$session;
+	}
+
+	@Override
+	public void hardcoreUnique$setSession(PlayerSession session) {
+		hardcoreUnique$session = session;
+	}
+}
@@ -0,0 +1,64 @@
+package com.xetpy.network;
+
+import com.xetpy.HardcoreUnique;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.codec.ByteBufCodecs;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tells the owner's client to show their echo at a position. The client renders it locally; no entity exists on the server.
+ * {@code equipment} holds item ids in the order main hand, off hand, head, chest, legs, feet.
+ * A client shows at most one phantom, so a new payload replaces the previous one.
+ */
+public record EchoPhantomPayload(
+	UUID echoId,
+	Identifier dimension,
+	double x,
+	double y,
+	double z,
+	String name,
+	List<String> equipment
+) implements CustomPacketPayload {
+	public static final Type<EchoPhantomPayload> TYPE = new Type<>(Identifier.fromNamespaceAndPath(HardcoreUnique.MOD_ID, "echo_phantom"));
+
+	public static final StreamCodec<ByteBuf, EchoPhantomPayload> STREAM_CODEC = StreamCodec.of(
+		(buffer, payload) -> {
+			UUIDUtil.STREAM_CODEC.encode(buffer, payload.echoId);
+			Identifier.STREAM_CODEC.encode(buffer, payload.dimension);
+			buffer.writeDouble(payload.x);
+			buffer.writeDouble(payload.y);
+			buffer.writeDouble(payload.z);
+			ByteBufCodecs.STRING_UTF8.encode(buffer, payload.name);
+			ByteBufCodecs.VAR_INT.encode(buffer, payload.equipment.size());
+			for (String itemId : payload.equipment) {
+				ByteBufCodecs.STRING_UTF8.encode(buffer, itemId);
+			}
+		},
+		buffer -> {
+			UUID echoId = UUIDUtil.STREAM_CODEC.decode(buffer);
+			Identifier dimension = Identifier.STREAM_CODEC.decode(buffer);
+			double x = buffer.readDouble();
+			double y = buffer.readDouble();
+			double z = buffer.readDouble();
+			String name = ByteBufCodecs.STRING_UTF8.decode(buffer);
+			int slots = Math.min(ByteBufCodecs.VAR_INT.decode(buffer), 6);
+			List<String> equipment = new ArrayList<>(slots);
+			for (int slot = 0; slot < slots; slot++) {
+				equipment.add(ByteBufCodecs.STRING_UTF8.decode(buffer));
+			}
+			return new EchoPhantomPayload(echoId, dimension, x, y, z, name, equipment);
+		}
+	);
+
+	@Override
+	public Type<EchoPhantomPayload> type() {
+		return TYPE;
+	}
+}
@@ -0,0 +1,27 @@
+package com.xetpy.network;
+
+import com.xetpy.HardcoreUnique;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.core.UUIDUtil;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+import java.util.UUID;
+
+/**
+ * Tells the owner's client to remove the phantom shown by the {@link EchoPhantomPayload} with the same id.
+ */
+public record EchoPhantomRemovePayload(UUID echoId) implements CustomPacketPayload {
+	public static final Type<EchoPhantomRemovePayload> TYPE = new Type<>(Identifier.fromNamespaceAndPath(HardcoreUnique.MOD_ID, "echo_phantom_remove"));
+
+	public static final StreamCodec<ByteBuf, EchoPhantomRemovePayload> STREAM_CODEC = UUIDUtil.STREAM_CODEC.map(
+		EchoPhantomRemovePayload::new,
+		EchoPhantomRemovePayload::echoId
+	);
+
+	@Override
+	public Type<EchoPhantomRemovePayload> type() {
+		return TYPE;
+	}
+}
@@ -0,0 +1,13 @@
+package com.xetpy.network;
+
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+
+public final class ModNetworking {
+	private ModNetworking() {
+	}
+
+	public static void register() {
+		PayloadTypeRegistry.playS2C().register(EchoPhantomPayload.TYPE, EchoPhantomPayload.STREAM_CODEC);
+		PayloadTypeRegistry.playS2C().register(EchoPhantomRemovePayload.TYPE, EchoPhantomRemovePayload.STREAM_CODEC);
+	}
+}
@@ -0,0 +1,88 @@
+package com.xetpy.state;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recent encounters of a player and folds older ones into aggregate counters,
+ * so memory and save cost per player stay bounded no matter how many encounters they had.
+ */
+public final class EncounterHistory {
+	private final ArrayDeque<TomorrowYouState.EncounterRecord> recent = new ArrayDeque<>();
+	final Map<String, Integer> foldedOutcomes = new HashMap<>();
+	final Map<String, Integer> foldedDimensions = new HashMap<>();
+	int foldedEncounters;
+	int foldedCompasses;
+
+	/**
+	 * Appends the record and folds the oldest ones until at most {@code retention} remain.
+	 */
+	public void add(TomorrowYouState.EncounterRecord record, int retention) {
+		recent.addLast(record);
+		while (recent.size() > retention) {
+			fold(recent.pollFirst());
+		}
+	}
+
+	public Collection<TomorrowYouState.EncounterRecord> recent() {
+		return Collections.unmodifiableCollection(recent);
+	}
+
+	public int totalEncounters() {
+		return foldedEncounters + recent.size();
+	}
+
+	public int compassesEarned() {
+		int total = foldedCompasses;
+		for (TomorrowYouState.EncounterRecord record : recent) {
+			if (record.gotCompass) {
+				total++;
+			}
+		}
+		return total;
+	}
+
+	public Map<String, Integer> outcomeCounts() {
+		Map<String, Integer> counts = new HashMap<>(foldedOutcomes);
+		for (TomorrowYouState.EncounterRecord record : recent) {
+			counts.merge(String.valueOf(record.outcome), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	public Map<String, Integer> dimensionCounts() {
+		Map<String, Integer> counts = new HashMap<>(foldedDimensions);
+		for (TomorrowYouState.EncounterRecord record : recent) {
+			counts.merge(String.valueOf(record.worldKey), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	int recentSize() {
+		return recent.size();
+	}
+
+	void fold(TomorrowYouState.EncounterRecord record) {
+		foldedEncounters++;
+		if (record.gotCompass) {
+			foldedCompasses++;
+		}
+		foldedOutcomes.merge(String.valueOf(record.outcome), 1, Integer::sum);
+		foldedDimensions.merge(String.valueOf(record.worldKey), 1, Integer::sum);
+	}
+
+	EncounterHistory copy() {
+		EncounterHistory copy = new EncounterHistory();
+		for (TomorrowYouState.EncounterRecord record : recent) {
+			copy.recent.addLast(record.copy());
+		}
+		copy.foldedOutcomes.putAll(foldedOutcomes);
+		copy.foldedDimensions.putAll(foldedDimensions);
+		copy.foldedEncounters = foldedEncounters;
+		copy.foldedCompasses = foldedCompasses;
+		return copy;
+	}
+}
@@ -0,0 +1,308 @@
+package com.xetpy.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary encoding of a player shard.
+ * <p>
+ * Layout: magic, format version, string table, body. Numbers are varints (zigzag for values that can be negative)
+ * and every string in the body is an index into the table, so repeated world keys, item ids and outcomes
+ * are stored once per shard. Index 0 stands for null.
+ * <p>
+ * Version 2 added the folded history aggregates; version 1 shards are still readable.
+ */
+final class StateCodec {
+	private static final int MAGIC = 0x54595301;
+	static final int VERSION = 2;
+
+	private StateCodec() {
+	}
+
+	static boolean isBinary(byte[] data) {
+		return data.length >= 4
+			&& ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC;
+	}
+
+	static byte[] encode(TomorrowYouState.PlayerTimelineData data) throws IOException {
+		StringTable strings = new StringTable();
+		ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(256);
+		DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		writeVarLong(body, data.journalSeq);
+		writeVarInt(body, data.completedEncounters);
+		writeSignedVarLong(body, data.lastTriggerGameTime);
+		body.writeBoolean(data.activeEvent != null);
+		if (data.activeEvent != null) {
+			writeEvent(body, strings, data.activeEvent);
+		}
+		writeVarInt(body, data.history.foldedEncounters);
+		writeVarInt(body, data.history.foldedCompasses);
+		writeCounts(body, strings, data.history.foldedOutcomes);
+		writeCounts(body, strings, data.history.foldedDimensions);
+		writeVarInt(body, data.history.recentSize());
+		for (TomorrowYouState.EncounterRecord record : data.history.recent()) {
+			writeRecord(body, strings, record);
+		}
+		body.flush();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bodyBytes.size() + 64);
+		DataOutputStream output = new DataOutputStream(out);
+		output.writeInt(MAGIC);
+		writeVarInt(output, VERSION);
+		writeVarInt(output, strings.values.size());
+		for (String value : strings.values) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(output, utf8.length);
+			output.write(utf8);
+		}
+		bodyBytes.writeTo(output);
+		output.flush();
+		return out.toByteArray();
+	}
+
+	static TomorrowYouState.PlayerTimelineData decode(byte[] bytes, int historyRetention) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (input.readInt() != MAGIC) {
+			throw new IOException("Not a TomorrowYou state shard");
+		}
+		int version = readVarInt(input);
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported TomorrowYou state shard version " + version);
+		}
+		int stringCount = readVarInt(input);
+		String[] strings = new String[stringCount + 1];
+		for (int i = 1; i <= stringCount; i++) {
+			byte[] utf8 = new byte[readVarInt(input)];
+			input.readFully(utf8);
+			strings[i] = new String(utf8, StandardCharsets.UTF_8);
+		}
+
+		TomorrowYouState.PlayerTimelineData data = new TomorrowYouState.PlayerTimelineData();
+		data.journalSeq = readVarLong(input);
+		data.completedEncounters = readVarInt(input);
+		data.lastTriggerGameTime = readSignedVarLong(input);
+		if (input.readBoolean()) {
+			data.activeEvent = readEvent(input, strings);
+		}
+		if (version >= 2) {
+			data.history.foldedEncounters = readVarInt(input);
+			data.history.foldedCompasses = readVarInt(input);
+			readCounts(input, strings, data.history.foldedOutcomes);
+			readCounts(input, strings, data.history.foldedDimensions);
+		}
+		int historySize = readVarInt(input);
+		for (int i = 0; i < historySize; i++) {
+			data.history.add(readRecord(input, strings), historyRetention);
+		}
+		return data;
+	}
+
+	private static void writeCounts(DataOutputStream out, StringTable strings, Map<String, Integer> counts) throws IOException {
+		writeVarInt(out, counts.size());
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			strings.write(out, entry.getKey());
+			writeVarInt(out, entry.getValue());
+		}
+	}
+
+	private static void readCounts(DataInputStream in, String[] strings, Map<String, Integer> counts) throws IOException {
+		int size = readVarInt(in);
+		for (int i = 0; i < size; i++) {
+			String key = readString(in, strings);
+			if (key == null) {
+				throw new IOException("Folded count without a key");
+			}
+			counts.merge(key, readVarInt(in), Integer::sum);
+		}
+	}
+
+	private static void writeEvent(DataOutputStream out, StringTable strings, TomorrowYouState.ActiveEvent event) throws IOException {
+		strings.write(out, event.worldKey);
+		writeSignedVarInt(out, event.targetX);
+		writeSignedVarInt(out, event.targetY);
+		writeSignedVarInt(out, event.targetZ);
+		writeVarLong(out, event.createdAt);
+		writeVarLong(out, event.createdDay);
+		int flags = (event.firstVisitDone ? 1 : 0) | (event.tomorrowBranchResolved ? 2 : 0) | (event.echoEntityUuid != null ? 4 : 0);
+		out.writeByte(flags);
+		strings.write(out, event.resolvedOutcome);
+		if (event.echoEntityUuid != null) {
+			out.writeLong(event.echoEntityUuid.getMostSignificantBits());
+			out.writeLong(event.echoEntityUuid.getLeastSignificantBits());
+		}
+		strings.write(out, event.playerNameAtCreation);
+		strings.write(out, event.mainHandItem);
+		strings.write(out, event.offHandItem);
+		writeVarInt(out, event.mainHandCount);
+		writeVarInt(out, event.offHandCount);
+		strings.write(out, event.headArmor);
+		strings.write(out, event.chestArmor);
+		strings.write(out, event.legsArmor);
+		strings.write(out, event.feetArmor);
+		List<String> inventory = event.frozenInventory == null ? List.of() : event.frozenInventory;
+		writeVarInt(out, inventory.size());
+		for (String line : inventory) {
+			strings.write(out, line);
+		}
+	}
+
+	private static TomorrowYouState.ActiveEvent readEvent(DataInputStream in, String[] strings) throws IOException {
+		TomorrowYouState.ActiveEvent event = new TomorrowYouState.ActiveEvent();
+		event.worldKey = readString(in, strings);
+		event.targetX = readSignedVarInt(in);
+		event.targetY = readSignedVarInt(in);
+		event.targetZ = readSignedVarInt(in);
+		event.createdAt = readVarLong(in);
+		event.createdDay = readVarLong(in);
+		int flags = in.readUnsignedByte();
+		event.firstVisitDone = (flags & 1) != 0;
+		event.tomorrowBranchResolved = (flags & 2) != 0;
+		event.resolvedOutcome = readString(in, strings);
+		if ((flags & 4) != 0) {
+			event.echoEntityUuid = new UUID(in.readLong(), in.readLong());
+		}
+		event.playerNameAtCreation = readString(in, strings);
+		event.mainHandItem = readString(in, strings);
+		event.offHandItem = readString(in, strings);
+		event.mainHandCount = readVarInt(in);
+		event.offHandCount = readVarInt(in);
+		event.headArmor = readString(in, strings);
+		event.chestArmor = readString(in, strings);
+		event.legsArmor = readString(in, strings);
+		event.feetArmor = readString(in, strings);
+		int inventorySize = readVarInt(in);
+		event.frozenInventory = new ArrayList<>(inventorySize);
+		for (int i = 0; i < inventorySize; i++) {
+			event.frozenInventory.add(readString(in, strings));
+		}
+		return event;
+	}
+
+	private static void writeRecord(DataOutputStream out, StringTable strings, TomorrowYouState.EncounterRecord record) throws IOException {
+		strings.write(out, record.worldKey);
+		writeSignedVarInt(out, record.x);
+		writeSignedVarInt(out, record.y);
+		writeSignedVarInt(out, record.z);
+		writeVarLong(out, record.createdDay);
+		writeVarLong(out, record.resolvedDay);
+		strings.write(out, record.outcome);
+		out.writeBoolean(record.gotCompass);
+	}
+
+	private static TomorrowYouState.EncounterRecord readRecord(DataInputStream in, String[] strings) throws IOException {
+		TomorrowYouState.EncounterRecord record = new TomorrowYouState.EncounterRecord();
+		record.worldKey = readString(in, strings);
+		record.x = readSignedVarInt(in);
+		record.y = readSignedVarInt(in);
+		record.z = readSignedVarInt(in);
+		record.createdDay = readVarLong(in);
+		record.resolvedDay = readVarLong(in);
+		record.outcome = readString(in, strings);
+		record.gotCompass = in.readBoolean();
+		return record;
+	}
+
+	private static String readString(DataInputStream in, String[] strings) throws IOException {
+		int index = readVarInt(in);
+		if (index < 0 || index >= strings.length) {
+			throw new IOException("String index " + index + " is outside of the table");
+		}
+		return strings[index];
+	}
+
+	static void writeVarInt(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	static int readVarInt(InputStream in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("VarInt is too long");
+	}
+
+	static void writeVarLong(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0L) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static long readVarLong(InputStream in) throws IOException {
+		long result = 0L;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("VarLong is too long");
+	}
+
+	private static void writeSignedVarInt(OutputStream out, int value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	private static int readSignedVarInt(InputStream in) throws IOException {
+		int raw = readVarInt(in);
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	private static void writeSignedVarLong(OutputStream out, long value) throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static long readSignedVarLong(InputStream in) throws IOException {
+		long raw = readVarLong(in);
+		return (raw >>> 1) ^ -(raw & 1L);
+	}
+
+	private static final class StringTable {
+		private final Map<String, Integer> indices = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		void write(OutputStream out, String value) throws IOException {
+			if (value == null) {
+				writeVarInt(out, 0);
+				return;
+			}
+			Integer index = indices.get(value);
+			if (index == null) {
+				values.add(value);
+				index = values.size();
+				indices.put(value, index);
+			}
+			writeVarInt(out, index);
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package com.xetpy.state;
+
+import com.xetpy.HardcoreUnique;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Owns the state files and the background thread that reads and writes them.
+ * Journal lines, shard writes and shard reads all go through the same single-threaded executor,
+ * so a shard read always observes every write submitted before it.
+ */
+final class StateStorage {
+	private static final String BINARY_EXTENSION = ".bin";
+	private static final String JSON_EXTENSION = ".json";
+	private static final String JOURNAL_SEQ_FILE_NAME = "journal.seq";
+
+	private final Path shardDirectory;
+	private final Path journalPath;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "HardcoreUnique-StateWriter");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private FileChannel journalChannel;
+
+	StateStorage(Path shardDirectory, Path journalPath) {
+		this.shardDirectory = shardDirectory;
+		this.journalPath = journalPath;
+	}
+
+	void append(String line) {
+		byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+		executor.execute(() -> {
+			try {
+				FileChannel channel = journalChannel();
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException exception) {
+				HardcoreUnique.LOGGER.error("Failed to append to TomorrowYou state journal", exception);
+			}
+		});
+	}
+
+	/**
+	 * The serializer runs on the writer thread; the data it captures must already be a copy.
+	 * A JSON shard left over from older versions is removed once its binary replacement is on disk.
+	 */
+	void writeShard(UUID playerId, ShardSerializer serializer) {
+		executor.execute(() -> {
+			try {
+				writeAtomically(shardPath(playerId, BINARY_EXTENSION), serializer.serialize());
+				Files.deleteIfExists(shardPath(playerId, JSON_EXTENSION));
+			} catch (IOException | RuntimeException exception) {
+				HardcoreUnique.LOGGER.error("Failed to write TomorrowYou state shard for {}", playerId, exception);
+			}
+		});
+	}
+
+	/**
+	 * Drops every journal line written before this call. Shards touched by those lines must have been submitted first.
+	 * The highest sequence number handed out so far is kept next to the shards, so numbering continues after a restart.
+	 */
+	void truncateJournal(long highWaterSeq) {
+		executor.execute(() -> {
+			try {
+				writeAtomically(shardDirectory.resolve(JOURNAL_SEQ_FILE_NAME), Long.toString(highWaterSeq).getBytes(StandardCharsets.UTF_8));
+				FileChannel channel = journalChannel();
+				channel.truncate(0L);
+				channel.force(true);
+			} catch (IOException exception) {
+				HardcoreUnique.LOGGER.error("Failed to truncate TomorrowYou state journal", exception);
+			}
+		});
+	}
+
+	CompletableFuture<byte[]> readShardAsync(UUID playerId) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return readShard(playerId);
+			} catch (IOException exception) {
+				throw new RuntimeException(exception);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Returns the raw shard bytes, falling back to a JSON shard written by older versions, or null if the player has none.
+	 */
+	byte[] readShard(UUID playerId) throws IOException {
+		Path path = existingShardPath(playerId);
+		return Files.exists(path) ? Files.readAllBytes(path) : null;
+	}
+
+	/**
+	 * Renames the shard that {@link #readShard} would return to {@code <name>.corrupt}, so a fresh one can be written
+	 * without losing the unreadable data.
+	 */
+	void quarantineShard(UUID playerId) {
+		executor.execute(() -> {
+			Path path = existingShardPath(playerId);
+			try {
+				if (Files.exists(path)) {
+					Files.move(path, path.resolveSibling(path.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch (IOException exception) {
+				HardcoreUnique.LOGGER.error("Failed to move aside corrupt TomorrowYou state shard {}", path, exception);
+			}
+		});
+	}
+
+	/**
+	 * Returns the sequence number recorded by the last compaction, or 0 if there is none.
+	 */
+	long readHighWaterSeq() {
+		Path path = shardDirectory.resolve(JOURNAL_SEQ_FILE_NAME);
+		if (!Files.exists(path)) {
+			return 0L;
+		}
+		try {
+			return Long.parseLong(Files.readString(path, StandardCharsets.UTF_8).trim());
+		} catch (IOException | NumberFormatException exception) {
+			HardcoreUnique.LOGGER.error("Failed to read TomorrowYou journal sequence", exception);
+			return 0L;
+		}
+	}
+
+	void awaitIdle() {
+		try {
+			executor.submit(() -> {
+				if (journalChannel != null) {
+					journalChannel.force(true);
+				}
+				return null;
+			}).get(30L, TimeUnit.SECONDS);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException exception) {
+			HardcoreUnique.LOGGER.warn("TomorrowYou state writer did not finish in time", exception);
+		}
+	}
+
+	/**
+	 * Feeds every complete journal line to the consumer. Reading stops at the first line the consumer rejects,
+	 * which is how a record torn by a crash is dropped.
+	 */
+	void replay(Consumer<String> consumer) throws IOException {
+		if (!Files.exists(journalPath)) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				try {
+					consumer.accept(line);
+				} catch (RuntimeException exception) {
+					HardcoreUnique.LOGGER.warn("Ignoring unreadable TomorrowYou journal tail", exception);
+					return;
+				}
+			}
+		}
+	}
+
+	// Players are bucketed by the first two hex digits of their UUID to keep directories small.
+	private Path shardPath(UUID playerId, String extension) {
+		String id = playerId.toString();
+		return shardDirectory.resolve(id.substring(0, 2)).resolve(id + extension);
+	}
+
+	private Path existingShardPath(UUID playerId) {
+		Path path = shardPath(playerId, BINARY_EXTENSION);
+		return Files.exists(path) ? path : shardPath(playerId, JSON_EXTENSION);
+	}
+
+	private FileChannel journalChannel() throws IOException {
+		if (journalChannel == null) {
+			Files.createDirectories(journalPath.getParent());
+			journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+		return journalChannel;
+	}
+
+	static void writeAtomically(Path target, byte[] content) throws IOException {
+		Files.createDirectories(target.getParent());
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException exception) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@FunctionalInterface
+	interface ShardSerializer {
+		byte[] serialize() throws IOException;
+	}
+}
@@ -5,116 +5,403 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.xetpy.HardcoreUnique;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.Identifier;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 public class TomorrowYouState {
 	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-	private static final Path FILE_PATH = FabricLoader.getInstance().getConfigDir().resolve("hardcore-unique.tomorrow-you-state.json");
+	private static final Gson JOURNAL_GSON = new Gson();
+	private static final String LEGACY_FILE_NAME = "hardcore-unique.tomorrow-you-state.json";
+	private static final String SHARD_DIRECTORY_NAME = "hardcore-unique.tomorrow-you-state";
+	private static final String JOURNAL_FILE_NAME = "hardcore-unique.tomorrow-you-state.journal";
 
-	private final Map<UUID, PlayerTimelineData> players = new HashMap<>();
+	// Access-ordered, so iteration starts from the least recently used player.
+	private final LinkedHashMap<UUID, PlayerTimelineData> players = new LinkedHashMap<>(16, 0.75F, true);
+	private final Set<UUID> onlinePlayers = new HashSet<>();
+	private final Set<UUID> dirtyPlayers = new HashSet<>();
+	private final Path legacyFilePath;
+	private final StateStorage storage;
+	private long nextJournalSeq = 1L;
+	private int uncompactedRecords;
+	private long lastCompactionNanos = System.nanoTime();
+	private int historyRetention;
 
-	public static TomorrowYouState load() {
-		if (Files.exists(FILE_PATH)) {
-			try (Reader reader = Files.newBufferedReader(FILE_PATH)) {
-				SerializableState loaded = GSON.fromJson(reader, SerializableState.class);
-				return fromSerializable(loaded);
-			} catch (IOException | JsonParseException exception) {
-				HardcoreUnique.LOGGER.error("Failed to read TomorrowYou state file, creating a new one", exception);
+	private TomorrowYouState(Path directory) {
+		this.legacyFilePath = directory.resolve(LEGACY_FILE_NAME);
+		this.storage = new StateStorage(directory.resolve(SHARD_DIRECTORY_NAME), directory.resolve(JOURNAL_FILE_NAME));
+	}
+
+	public static TomorrowYouState load(int historyRetention) {
+		return load(FabricLoader.getInstance().getConfigDir(), historyRetention);
+	}
+
+	/**
+	 * Loads the state kept under {@code directory}: migrates the legacy single-file state, replays the journal and compacts it.
+	 */
+	public static TomorrowYouState load(Path directory, int historyRetention) {
+		TomorrowYouState state = new TomorrowYouState(directory);
+		state.historyRetention = historyRetention;
+		state.nextJournalSeq = state.storage.readHighWaterSeq() + 1L;
+		state.migrateLegacyFile();
+		state.replayJournal();
+		if (state.uncompactedRecords > 0) {
+			state.compact();
+		}
+		return state;
+	}
+
+	/**
+	 * Called once per server tick. Once the compaction interval has passed, writes the shard of every player touched
+	 * since the last compaction and truncates the journal. Copies are taken here on the tick thread;
+	 * serialization and the fsync happen on the background writer.
+	 */
+	public synchronized void tick(int compactionIntervalSeconds, int offlineCacheSize) {
+		if (uncompactedRecords > 0 && System.nanoTime() - lastCompactionNanos >= compactionIntervalSeconds * 1_000_000_000L) {
+			compact();
+		}
+		evictOffline(offlineCacheSize);
+	}
+
+	/**
+	 * Compacts the journal and blocks until the writer has finished. Used on server shutdown.
+	 */
+	public void flush() {
+		synchronized (this) {
+			if (uncompactedRecords > 0) {
+				compact();
 			}
 		}
-		return new TomorrowYouState();
+		storage.awaitIdle();
 	}
 
-	public synchronized void save() {
-		try {
-			Files.createDirectories(FILE_PATH.getParent());
-			try (Writer writer = Files.newBufferedWriter(FILE_PATH)) {
-				GSON.toJson(toSerializable(), writer);
+	/**
+	 * Blocks until every journal line and shard submitted so far is on disk, without compacting.
+	 */
+	void awaitWrites() {
+		storage.awaitIdle();
+	}
+
+	/**
+	 * Number of player entries held in memory, online players and the offline cache together.
+	 */
+	public synchronized int cachedPlayerCount() {
+		return players.size();
+	}
+
+	/**
+	 * Returns the loaded data of the player, or null while their shard is still being read.
+	 */
+	public synchronized PlayerTimelineData getPlayerData(UUID playerId) {
+		return players.get(playerId);
+	}
+
+	/**
+	 * Marks the player as online and reads their shard on the storage thread if it is not cached.
+	 * The loaded data is published and handed to {@code onLoaded} through the given executor, which should be the server thread.
+	 */
+	public synchronized void requestLoad(UUID playerId, Executor mainThread, Consumer<PlayerTimelineData> onLoaded) {
+		onlinePlayers.add(playerId);
+		lookup(playerId, mainThread, onLoaded);
+	}
+
+	/**
+	 * Delivers the data of a possibly offline player to {@code onLoaded}, reading their shard if it is not cached.
+	 * Unlike {@link #requestLoad} the player is not marked online, so the entry stays eligible for eviction.
+	 */
+	public synchronized void lookup(UUID playerId, Executor mainThread, Consumer<PlayerTimelineData> onLoaded) {
+		PlayerTimelineData cached = players.get(playerId);
+		if (cached != null) {
+			onLoaded.accept(cached);
+			return;
+		}
+		storage.readShardAsync(playerId).whenCompleteAsync((bytes, throwable) -> {
+			PlayerTimelineData data = null;
+			if (throwable != null) {
+				HardcoreUnique.LOGGER.error("Failed to read TomorrowYou state shard for {}", playerId, throwable);
+			} else {
+				data = parseShard(playerId, bytes);
 			}
-		} catch (IOException exception) {
-			HardcoreUnique.LOGGER.error("Failed to write TomorrowYou state file", exception);
+			PlayerTimelineData loaded = data == null ? new PlayerTimelineData() : data;
+			PlayerTimelineData published;
+			synchronized (this) {
+				published = players.computeIfAbsent(playerId, ignored -> loaded);
+			}
+			onLoaded.accept(published);
+		}, mainThread);
+	}
+
+	/**
+	 * Marks the player as offline. Their shard is written now if it changed and the entry becomes eligible for eviction.
+	 */
+	public synchronized void release(UUID playerId) {
+		onlinePlayers.remove(playerId);
+		if (dirtyPlayers.remove(playerId)) {
+			writeShard(playerId, players.get(playerId));
 		}
 	}
 
-	public synchronized PlayerTimelineData getOrCreatePlayerData(UUID playerId) {
-		return players.computeIfAbsent(playerId, ignored -> new PlayerTimelineData());
+	/**
+	 * Applies from the next finalized encounter on; longer histories are folded when the player's next record is added.
+	 */
+	public synchronized void setHistoryRetention(int historyRetention) {
+		this.historyRetention = historyRetention;
+	}
+
+	public synchronized void startEvent(UUID playerId, ActiveEvent event, long gameTime) {
+		JournalRecord record = new JournalRecord(JournalRecord.EVENT_CREATED, playerId);
+		record.event = event.copy();
+		record.gameTime = gameTime;
+		commit(playerId, record);
+	}
+
+	public synchronized void markEchoSpawned(UUID playerId, UUID echoEntityUuid) {
+		JournalRecord record = new JournalRecord(JournalRecord.ECHO_SPAWNED, playerId);
+		record.echoEntityUuid = echoEntityUuid;
+		commit(playerId, record);
+	}
+
+	public synchronized void markFirstVisitDone(UUID playerId) {
+		commit(playerId, new JournalRecord(JournalRecord.FIRST_VISIT_DONE, playerId));
 	}
 
-	public synchronized void clearActiveEvent(UUID playerId) {
-		PlayerTimelineData data = getOrCreatePlayerData(playerId);
-		data.activeEvent = null;
+	public synchronized void finalizeEncounter(UUID playerId, EncounterRecord encounter) {
+		JournalRecord record = new JournalRecord(JournalRecord.ENCOUNTER_FINALIZED, playerId);
+		record.encounter = encounter.copy();
+		commit(playerId, record);
 	}
 
-	public synchronized void addHistory(UUID playerId, EncounterRecord record) {
-		PlayerTimelineData data = getOrCreatePlayerData(playerId);
-		data.history.add(record);
+	private void commit(UUID playerId, JournalRecord record) {
+		PlayerTimelineData data = players.get(playerId);
+		if (data == null) {
+			throw new IllegalStateException("TomorrowYou state for " + playerId + " is not loaded");
+		}
+		// Shards written before the sequence was persisted may be ahead of it; a record numbered below its shard would be skipped on replay.
+		record.seq = Math.max(nextJournalSeq, data.journalSeq + 1L);
+		nextJournalSeq = record.seq + 1L;
+		apply(data, record);
+		storage.append(JOURNAL_GSON.toJson(record));
+		dirtyPlayers.add(playerId);
+		uncompactedRecords++;
 	}
 
-	private SerializableState toSerializable() {
-		SerializableState serializableState = new SerializableState();
-		for (Map.Entry<UUID, PlayerTimelineData> entry : players.entrySet()) {
-			SerializablePlayerData serializablePlayerData = new SerializablePlayerData();
-			serializablePlayerData.playerId = entry.getKey().toString();
-			serializablePlayerData.completedEncounters = entry.getValue().completedEncounters;
-			serializablePlayerData.lastTriggerGameTime = entry.getValue().lastTriggerGameTime;
-			for (EncounterRecord historyRecord : entry.getValue().history) {
-				serializablePlayerData.history.add(historyRecord.copy());
+	private void apply(PlayerTimelineData data, JournalRecord record) {
+		switch (record.type) {
+			case JournalRecord.EVENT_CREATED -> {
+				data.activeEvent = record.event.copy();
+				data.lastTriggerGameTime = record.gameTime;
+			}
+			case JournalRecord.ECHO_SPAWNED -> {
+				if (data.activeEvent != null) {
+					data.activeEvent.echoEntityUuid = record.echoEntityUuid;
+				}
+			}
+			case JournalRecord.FIRST_VISIT_DONE -> {
+				if (data.activeEvent != null) {
+					data.activeEvent.echoEntityUuid = null;
+					data.activeEvent.firstVisitDone = true;
+					data.activeEvent.resolvedOutcome = "first_visit_done";
+				}
 			}
-			if (entry.getValue().activeEvent != null) {
-				serializablePlayerData.activeEvent = entry.getValue().activeEvent.copy();
+			case JournalRecord.ENCOUNTER_FINALIZED -> {
+				data.history.add(record.encounter.copy(), historyRetention);
+				data.completedEncounters += 1;
+				data.activeEvent = null;
+			}
+			default -> throw new IllegalArgumentException("Unknown journal record type " + record.type);
+		}
+		data.journalSeq = record.seq;
+	}
+
+	// Journal lines already folded into a shard are skipped using the sequence number stored in that shard.
+	private void replayJournal() {
+		try {
+			storage.replay(line -> {
+				JournalRecord record = JOURNAL_GSON.fromJson(line, JournalRecord.class);
+				if (record == null || record.type == null || record.playerId == null) {
+					throw new JsonParseException("Incomplete journal record");
+				}
+				UUID playerId = UUID.fromString(record.playerId);
+				PlayerTimelineData data = players.computeIfAbsent(playerId, this::readShardNow);
+				nextJournalSeq = Math.max(nextJournalSeq, record.seq + 1L);
+				if (record.seq <= data.journalSeq) {
+					return;
+				}
+				apply(data, record);
+				dirtyPlayers.add(playerId);
+				uncompactedRecords++;
+			});
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.error("Failed to replay TomorrowYou state journal", exception);
+		}
+	}
+
+	private void migrateLegacyFile() {
+		if (!Files.exists(legacyFilePath)) {
+			return;
+		}
+		try (Reader reader = Files.newBufferedReader(legacyFilePath)) {
+			for (Map.Entry<UUID, PlayerTimelineData> entry : readLegacyState(reader, historyRetention).entrySet()) {
+				PlayerTimelineData data = entry.getValue();
+				players.put(entry.getKey(), data);
+				writeShard(entry.getKey(), data);
+				nextJournalSeq = Math.max(nextJournalSeq, data.journalSeq + 1L);
 			}
-			serializableState.players.add(serializablePlayerData);
+			storage.awaitIdle();
+			Files.move(legacyFilePath, legacyFilePath.resolveSibling(legacyFilePath.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+			HardcoreUnique.LOGGER.info("Migrated TomorrowYou state of {} players into per-player shards", players.size());
+		} catch (IOException | JsonParseException exception) {
+			HardcoreUnique.LOGGER.error("Failed to migrate legacy TomorrowYou state file", exception);
 		}
-		return serializableState;
 	}
 
-	private static TomorrowYouState fromSerializable(SerializableState serializableState) {
-		TomorrowYouState state = new TomorrowYouState();
-		if (serializableState == null || serializableState.players == null) {
-			return state;
+	/**
+	 * Parses the single-file JSON state written by versions before shards. Entries with an unreadable player id are skipped.
+	 */
+	static Map<UUID, PlayerTimelineData> readLegacyState(Reader reader, int historyRetention) {
+		Map<UUID, PlayerTimelineData> result = new LinkedHashMap<>();
+		SerializableState legacy = GSON.fromJson(reader, SerializableState.class);
+		if (legacy == null || legacy.players == null) {
+			return result;
 		}
-		for (SerializablePlayerData serializablePlayerData : serializableState.players) {
-			if (serializablePlayerData.playerId == null) {
+		for (SerializablePlayerData serializablePlayerData : legacy.players) {
+			UUID playerId = parsePlayerId(serializablePlayerData.playerId);
+			if (playerId == null) {
 				continue;
 			}
-			UUID playerId;
-			try {
-				playerId = UUID.fromString(serializablePlayerData.playerId);
-			} catch (IllegalArgumentException ignored) {
+			PlayerTimelineData data = fromSerializable(serializablePlayerData, historyRetention);
+			data.journalSeq = legacy.journalSeq;
+			result.put(playerId, data);
+		}
+		return result;
+	}
+
+	private void compact() {
+		for (UUID playerId : dirtyPlayers) {
+			writeShard(playerId, players.get(playerId));
+		}
+		dirtyPlayers.clear();
+		storage.truncateJournal(nextJournalSeq - 1L);
+		uncompactedRecords = 0;
+		lastCompactionNanos = System.nanoTime();
+	}
+
+	private void evictOffline(int offlineCacheSize) {
+		int offline = players.size() - onlinePlayers.size();
+		if (offline <= offlineCacheSize) {
+			return;
+		}
+		Iterator<Map.Entry<UUID, PlayerTimelineData>> iterator = players.entrySet().iterator();
+		while (offline > offlineCacheSize && iterator.hasNext()) {
+			Map.Entry<UUID, PlayerTimelineData> entry = iterator.next();
+			if (onlinePlayers.contains(entry.getKey())) {
 				continue;
 			}
+			if (dirtyPlayers.remove(entry.getKey())) {
+				writeShard(entry.getKey(), entry.getValue());
+			}
+			iterator.remove();
+			offline--;
+		}
+	}
 
-			PlayerTimelineData playerData = new PlayerTimelineData();
-			playerData.completedEncounters = Math.max(0, serializablePlayerData.completedEncounters);
-			playerData.lastTriggerGameTime = serializablePlayerData.lastTriggerGameTime;
-			if (serializablePlayerData.history != null) {
-				for (EncounterRecord historyRecord : serializablePlayerData.history) {
-					playerData.history.add(historyRecord.copy());
-				}
+	private void writeShard(UUID playerId, PlayerTimelineData data) {
+		if (data == null) {
+			return;
+		}
+		PlayerTimelineData snapshot = data.copy();
+		storage.writeShard(playerId, () -> StateCodec.encode(snapshot));
+	}
+
+	private PlayerTimelineData readShardNow(UUID playerId) {
+		try {
+			PlayerTimelineData data = parseShard(playerId, storage.readShard(playerId));
+			return data == null ? new PlayerTimelineData() : data;
+		} catch (IOException exception) {
+			HardcoreUnique.LOGGER.error("Failed to read TomorrowYou state shard for {}", playerId, exception);
+			return new PlayerTimelineData();
+		}
+	}
+
+	// Shards written before the binary format existed are JSON; they are rewritten as binary on the next save.
+	private PlayerTimelineData parseShard(UUID playerId, byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			if (StateCodec.isBinary(bytes)) {
+				return StateCodec.decode(bytes, historyRetention);
 			}
-			if (serializablePlayerData.activeEvent != null) {
-				playerData.activeEvent = serializablePlayerData.activeEvent.copy();
+			SerializablePlayerData serializablePlayerData = GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), SerializablePlayerData.class);
+			return serializablePlayerData == null ? null : fromSerializable(serializablePlayerData, historyRetention);
+		} catch (IOException | JsonParseException exception) {
+			HardcoreUnique.LOGGER.error("Failed to parse TomorrowYou state shard for {}, moving it aside and starting over", playerId, exception);
+			storage.quarantineShard(playerId);
+			return null;
+		}
+	}
+
+	private static PlayerTimelineData fromSerializable(SerializablePlayerData serializablePlayerData, int historyRetention) {
+		PlayerTimelineData playerData = new PlayerTimelineData();
+		playerData.journalSeq = serializablePlayerData.journalSeq;
+		playerData.completedEncounters = Math.max(0, serializablePlayerData.completedEncounters);
+		playerData.lastTriggerGameTime = serializablePlayerData.lastTriggerGameTime;
+		if (serializablePlayerData.history != null) {
+			for (EncounterRecord historyRecord : serializablePlayerData.history) {
+				playerData.history.add(historyRecord.copy(), historyRetention);
 			}
-			state.players.put(playerId, playerData);
 		}
-		return state;
+		if (serializablePlayerData.activeEvent != null) {
+			playerData.activeEvent = serializablePlayerData.activeEvent.copy();
+		}
+		return playerData;
+	}
+
+	private static UUID parsePlayerId(String rawId) {
+		if (rawId == null) {
+			return null;
+		}
+		try {
+			return UUID.fromString(rawId);
+		} catch (IllegalArgumentException ignored) {
+			return null;
+		}
 	}
 
 	public static final class PlayerTimelineData {
+		long journalSeq;
 		public int completedEncounters;
 		public long lastTriggerGameTime = Long.MIN_VALUE;
 		public ActiveEvent activeEvent;
-		public List<EncounterRecord> history = new ArrayList<>();
+		public EncounterHistory history = new EncounterHistory();
+
+		PlayerTimelineData copy() {
+			PlayerTimelineData copy = new PlayerTimelineData();
+			copy.journalSeq = journalSeq;
+			copy.completedEncounters = completedEncounters;
+			copy.lastTriggerGameTime = lastTriggerGameTime;
+			copy.activeEvent = activeEvent == null ? null : activeEvent.copy();
+			copy.history = history.copy();
+			return copy;
+		}
 	}
 
 	public static final class ActiveEvent {
@@ -138,10 +425,39 @@ public class TomorrowYouState {
 		public String legsArmor = "minecraft:air";
 		public String feetArmor = "minecraft:air";
 		public List<String> frozenInventory = new ArrayList<>();
+		// Resolved from worldKey at most once per instance and never persisted.
+		private transient ResourceKey<Level> dimension;
+		private transient boolean dimensionResolved;
+
+		/**
+		 * Returns the target dimension, or null if worldKey cannot be parsed or the dimension was marked missing.
+		 * Keys are interned by {@link ResourceKey#create}, so the result can be compared by reference with a level's dimension.
+		 */
+		public ResourceKey<Level> dimension() {
+			if (!dimensionResolved) {
+				Identifier worldId = Identifier.tryParse(worldKey);
+				dimension = worldId == null ? null : ResourceKey.create(Registries.DIMENSION, worldId);
+				dimensionResolved = true;
+			}
+			return dimension;
+		}
+
+		public void setDimension(ResourceKey<Level> dimension) {
+			this.dimension = dimension;
+			this.worldKey = dimension.identifier().toString();
+			this.dimensionResolved = true;
+		}
+
+		public void markDimensionMissing() {
+			dimension = null;
+			dimensionResolved = true;
+		}
 
 		private ActiveEvent copy() {
 			ActiveEvent copy = new ActiveEvent();
 			copy.worldKey = worldKey;
+			copy.dimension = dimension;
+			copy.dimensionResolved = dimensionResolved;
 			copy.targetX = targetX;
 			copy.targetY = targetY;
 			copy.targetZ = targetZ;
@@ -175,7 +491,7 @@ public class TomorrowYouState {
 		public String outcome = "unknown";
 		public boolean gotCompass;
 
-		private EncounterRecord copy() {
+		EncounterRecord copy() {
 			EncounterRecord copy = new EncounterRecord();
 			copy.worldKey = worldKey;
 			copy.x = x;
@@ -190,14 +506,36 @@ public class TomorrowYouState {
 	}
 
 	private static final class SerializableState {
+		long journalSeq;
 		List<SerializablePlayerData> players = new ArrayList<>();
 	}
 
 	private static final class SerializablePlayerData {
 		String playerId;
+		long journalSeq;
 		int completedEncounters;
 		long lastTriggerGameTime = Long.MIN_VALUE;
 		ActiveEvent activeEvent;
 		List<EncounterRecord> history = new ArrayList<>();
 	}
+
+	private static final class JournalRecord {
+		static final String EVENT_CREATED = "event_created";
+		static final String ECHO_SPAWNED = "echo_spawned";
+		static final String FIRST_VISIT_DONE = "first_visit_done";
+		static final String ENCOUNTER_FINALIZED = "encounter_finalized";
+
+		long seq;
+		String type;
+		String playerId;
+		long gameTime;
+		UUID echoEntityUuid;
+		ActiveEvent event;
+		EncounterRecord encounter;
+
+		JournalRecord(String type, UUID playerId) {
+			this.type = type;
+			this.playerId = playerId.toString();
+		}
+	}
 }
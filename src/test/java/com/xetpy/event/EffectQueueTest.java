@@ -0,0 +1,58 @@
+package com.xetpy.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EffectQueueTest {
+	@Test
+	void keepsOneShotSoundsQueuedAfterAmbientEffects() {
+		// The last tick of the tomorrow branch: particles and a heartbeat, then the outcome sounds.
+		EffectQueue<String> queue = new EffectQueue<>();
+		queue.add("portal_particles", true);
+		queue.add("heartbeat", true);
+		queue.add("hurt", false);
+		queue.add("teleport", false);
+
+		assertEquals(1, queue.overflow(3));
+		assertEquals(List.of("hurt", "teleport", "portal_particles"), queue.drain(3));
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	void sendsEveryOneShotEffectEvenOverBudget() {
+		EffectQueue<String> queue = new EffectQueue<>();
+		queue.add("particles", true);
+		for (int index = 0; index < 5; index++) {
+			queue.add("sound" + index, false);
+		}
+
+		assertEquals(1, queue.overflow(2));
+		assertEquals(List.of("sound0", "sound1", "sound2", "sound3", "sound4"), queue.drain(2));
+	}
+
+	@Test
+	void dropsOnlyTheNewestAmbientEffects() {
+		EffectQueue<String> queue = new EffectQueue<>();
+		for (int index = 0; index < 6; index++) {
+			queue.add("ambient" + index, true);
+		}
+
+		assertEquals(2, queue.overflow(4));
+		assertEquals(List.of("ambient0", "ambient1", "ambient2", "ambient3"), queue.drain(4));
+	}
+
+	@Test
+	void sendsEverythingWithinBudget() {
+		EffectQueue<String> queue = new EffectQueue<>();
+		queue.add("particles", true);
+		queue.add("sound", false);
+
+		assertEquals(0, queue.overflow(4));
+		assertEquals(List.of("sound", "particles"), queue.drain(4));
+		assertEquals(List.of(), queue.drain(4));
+	}
+}
@@ -0,0 +1,119 @@
+package com.xetpy.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TickSchedulerTest {
+	// One revolution of the wheel, kept in sync with TickScheduler.WHEEL_SIZE.
+	private static final int WHEEL_SIZE = 256;
+
+	@Test
+	void runsTasksAcrossTheWheelBoundary() {
+		TickScheduler scheduler = new TickScheduler();
+		List<Long> ran = new ArrayList<>();
+		long start = WHEEL_SIZE - 3;
+		scheduler.advance(start, unlimited());
+		for (long deadline = start + 1; deadline <= start + 6; deadline++) {
+			long due = deadline;
+			scheduler.schedule(due, () -> ran.add(due));
+		}
+
+		for (long tick = start + 1; tick <= start + 6; tick++) {
+			scheduler.advance(tick, unlimited());
+			assertEquals(List.of(tick), ran.subList(ran.size() - 1, ran.size()));
+		}
+		assertEquals(6, ran.size());
+		assertEquals(0, scheduler.pending());
+	}
+
+	@Test
+	void keepsTasksDueBeyondOneRevolution() {
+		TickScheduler scheduler = new TickScheduler();
+		List<Long> ran = new ArrayList<>();
+		scheduler.advance(0L, unlimited());
+		long farDeadline = WHEEL_SIZE * 2L + 5L;
+		scheduler.schedule(farDeadline, () -> ran.add(farDeadline));
+		// Shares a slot with the far task but is due one revolution earlier.
+		scheduler.schedule(farDeadline - WHEEL_SIZE, () -> ran.add(farDeadline - WHEEL_SIZE));
+
+		for (long tick = 1L; tick < farDeadline; tick++) {
+			scheduler.advance(tick, unlimited());
+		}
+		assertEquals(List.of(farDeadline - WHEEL_SIZE), ran);
+		assertEquals(1, scheduler.pending());
+
+		scheduler.advance(farDeadline, unlimited());
+		assertEquals(List.of(farDeadline - WHEEL_SIZE, farDeadline), ran);
+		assertEquals(0, scheduler.pending());
+	}
+
+	@Test
+	void runsEverythingDueWhenTimeJumpsPastARevolution() {
+		TickScheduler scheduler = new TickScheduler();
+		List<Long> ran = new ArrayList<>();
+		scheduler.advance(0L, unlimited());
+		scheduler.schedule(10L, () -> ran.add(10L));
+		scheduler.schedule(WHEEL_SIZE + 20L, () -> ran.add(WHEEL_SIZE + 20L));
+		scheduler.schedule(WHEEL_SIZE * 4L, () -> ran.add(WHEEL_SIZE * 4L));
+
+		scheduler.advance(WHEEL_SIZE * 3L, unlimited());
+		assertEquals(2, ran.size());
+		assertTrue(ran.containsAll(List.of(10L, WHEEL_SIZE + 20L)));
+		assertEquals(1, scheduler.pending());
+	}
+
+	@Test
+	void defersTasksInOrderOnceTheBudgetIsSpent() {
+		TickScheduler scheduler = new TickScheduler();
+		List<Integer> ran = new ArrayList<>();
+		scheduler.advance(0L, unlimited());
+		for (int task = 0; task < 3; task++) {
+			int id = task;
+			scheduler.schedule(1L, () -> ran.add(id));
+		}
+
+		TickBudget exhausted = exhausted();
+		scheduler.advance(1L, exhausted);
+		assertEquals(List.of(0), ran);
+		assertEquals(2L, exhausted.deferredTasks());
+		assertEquals(2, scheduler.pending());
+
+		scheduler.advance(2L, exhausted());
+		assertEquals(List.of(0, 1), ran);
+
+		scheduler.advance(3L, unlimited());
+		assertEquals(List.of(0, 1, 2), ran);
+		assertEquals(0, scheduler.pending());
+	}
+
+	@Test
+	void skipsCancelledTasks() {
+		TickScheduler scheduler = new TickScheduler();
+		List<Integer> ran = new ArrayList<>();
+		scheduler.advance(0L, unlimited());
+		TickScheduler.Task cancelled = scheduler.schedule(5L, () -> ran.add(1));
+		scheduler.schedule(5L, () -> ran.add(2));
+		cancelled.cancel();
+
+		scheduler.advance(5L, unlimited());
+		assertEquals(List.of(2), ran);
+		assertEquals(0, scheduler.pending());
+	}
+
+	private static TickBudget unlimited() {
+		TickBudget budget = new TickBudget();
+		budget.begin(Long.MAX_VALUE / 2);
+		return budget;
+	}
+
+	private static TickBudget exhausted() {
+		TickBudget budget = new TickBudget();
+		budget.begin(0L);
+		return budget;
+	}
+}
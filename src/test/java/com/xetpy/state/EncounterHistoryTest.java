@@ -0,0 +1,105 @@
+package com.xetpy.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EncounterHistoryTest {
+	private static final int RETENTION = 3;
+
+	@Test
+	void foldsEachRecordPushedPastRetentionExactlyOnce() {
+		EncounterHistory history = new EncounterHistory();
+		history.add(record(0, "minecraft:overworld", "player_died", false), RETENTION);
+		history.add(record(1, "minecraft:the_nether", "tomorrow_compass", true), RETENTION);
+		history.add(record(2, "minecraft:overworld", "tomorrow_compass", true), RETENTION);
+		assertEquals(0, history.foldedEncounters);
+
+		history.add(record(3, "minecraft:the_end", "first_visit_done", false), RETENTION);
+		history.add(record(4, "minecraft:overworld", "player_died", true), RETENTION);
+
+		assertEquals(2, history.foldedEncounters);
+		assertEquals(1, history.foldedCompasses);
+		assertEquals(Map.of("player_died", 1, "tomorrow_compass", 1), history.foldedOutcomes);
+		assertEquals(Map.of("minecraft:overworld", 1, "minecraft:the_nether", 1), history.foldedDimensions);
+		assertEquals(5, history.totalEncounters());
+		assertEquals(3, history.compassesEarned());
+		assertEquals(Map.of("player_died", 2, "tomorrow_compass", 2, "first_visit_done", 1), history.outcomeCounts());
+		assertEquals(Map.of("minecraft:overworld", 3, "minecraft:the_nether", 1, "minecraft:the_end", 1), history.dimensionCounts());
+	}
+
+	@Test
+	void keepsRecentOrderAcrossManyWraps() {
+		EncounterHistory history = new EncounterHistory();
+		for (int index = 0; index < 100; index++) {
+			history.add(record(index, "minecraft:overworld", "first_visit_done", index % 10 == 0), RETENTION);
+		}
+
+		assertEquals(List.of(97, 98, 99), xs(history));
+		assertEquals(97, history.foldedEncounters);
+		assertEquals(10, history.foldedCompasses);
+		assertEquals(Map.of("first_visit_done", 97), history.foldedOutcomes);
+		assertEquals(100, history.totalEncounters());
+	}
+
+	@Test
+	void lowerRetentionFoldsTheOldestOnNextAdd() {
+		EncounterHistory history = new EncounterHistory();
+		for (int index = 0; index < 5; index++) {
+			history.add(record(index, "minecraft:overworld", "player_died", false), 5);
+		}
+		history.add(record(5, "minecraft:overworld", "player_died", false), 2);
+
+		assertEquals(List.of(4, 5), xs(history));
+		assertEquals(4, history.foldedEncounters);
+		assertEquals(6, history.totalEncounters());
+	}
+
+	@Test
+	void countsNullKeysUnderTheirStringForm() {
+		EncounterHistory history = new EncounterHistory();
+		history.add(record(0, null, null, false), 1);
+		history.add(record(1, "minecraft:overworld", "player_died", false), 1);
+
+		assertEquals(Map.of("null", 1), history.foldedOutcomes);
+		assertEquals(Map.of("null", 1), history.foldedDimensions);
+	}
+
+	@Test
+	void copyIsIndependent() {
+		EncounterHistory history = new EncounterHistory();
+		for (int index = 0; index < 4; index++) {
+			history.add(record(index, "minecraft:overworld", "player_died", true), RETENTION);
+		}
+		EncounterHistory copy = history.copy();
+		copy.add(record(4, "minecraft:the_end", "first_visit_done", false), RETENTION);
+
+		assertEquals(List.of(1, 2, 3), xs(history));
+		assertEquals(1, history.foldedEncounters);
+		assertEquals(Map.of("minecraft:overworld", 1), history.foldedDimensions);
+		assertEquals(List.of(2, 3, 4), xs(copy));
+		assertEquals(2, copy.foldedEncounters);
+		assertEquals(2, copy.foldedCompasses);
+	}
+
+	private static List<Integer> xs(EncounterHistory history) {
+		List<Integer> xs = new ArrayList<>();
+		for (TomorrowYouState.EncounterRecord record : history.recent()) {
+			xs.add(record.x);
+		}
+		return xs;
+	}
+
+	private static TomorrowYouState.EncounterRecord record(int x, String worldKey, String outcome, boolean gotCompass) {
+		TomorrowYouState.EncounterRecord record = new TomorrowYouState.EncounterRecord();
+		record.x = x;
+		record.worldKey = worldKey;
+		record.outcome = outcome;
+		record.gotCompass = gotCompass;
+		return record;
+	}
+}
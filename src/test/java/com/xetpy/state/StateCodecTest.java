@@ -0,0 +1,303 @@
+package com.xetpy.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateCodecTest {
+	private static final int HISTORY_RETENTION = 4;
+	private static final int MAGIC = 0x54595301;
+
+	@Test
+	void roundTripsPlayerWithActiveEventAndFoldedHistory() throws IOException {
+		TomorrowYouState.PlayerTimelineData data = new TomorrowYouState.PlayerTimelineData();
+		data.journalSeq = 1234L;
+		data.completedEncounters = 7;
+		data.lastTriggerGameTime = 98_765L;
+		for (int encounter = 0; encounter < 7; encounter++) {
+			data.history.add(record(encounter % 2 == 0 ? "minecraft:overworld" : "minecraft:the_nether", -30_000_000 + encounter, -64, -encounter, "outcome_" + (encounter % 3), encounter % 2 == 0), HISTORY_RETENTION);
+		}
+		data.activeEvent = event();
+
+		TomorrowYouState.PlayerTimelineData decoded = StateCodec.decode(StateCodec.encode(data), HISTORY_RETENTION);
+
+		assertEquals(1234L, decoded.journalSeq);
+		assertEquals(7, decoded.completedEncounters);
+		assertEquals(98_765L, decoded.lastTriggerGameTime);
+		assertEvent(data.activeEvent, decoded.activeEvent);
+		assertEquals(3, decoded.history.foldedEncounters);
+		assertEquals(data.history.foldedCompasses, decoded.history.foldedCompasses);
+		assertEquals(data.history.foldedOutcomes, decoded.history.foldedOutcomes);
+		assertEquals(data.history.foldedDimensions, decoded.history.foldedDimensions);
+		assertRecords(new ArrayList<>(data.history.recent()), new ArrayList<>(decoded.history.recent()));
+	}
+
+	@Test
+	void roundTripsPlayerWithoutActiveEvent() throws IOException {
+		TomorrowYouState.PlayerTimelineData data = new TomorrowYouState.PlayerTimelineData();
+		data.history.add(record("minecraft:the_end", -1, -2, -3, "player_died", false), HISTORY_RETENTION);
+
+		TomorrowYouState.PlayerTimelineData decoded = StateCodec.decode(StateCodec.encode(data), HISTORY_RETENTION);
+
+		assertNull(decoded.activeEvent);
+		assertEquals(Long.MIN_VALUE, decoded.lastTriggerGameTime);
+		assertEquals(0, decoded.history.foldedEncounters);
+		assertRecords(new ArrayList<>(data.history.recent()), new ArrayList<>(decoded.history.recent()));
+	}
+
+	@Test
+	void roundTripsExtremeCoordinatesAndTimes() throws IOException {
+		TomorrowYouState.PlayerTimelineData data = new TomorrowYouState.PlayerTimelineData();
+		data.lastTriggerGameTime = Long.MIN_VALUE;
+		data.activeEvent = event();
+		data.activeEvent.targetX = Integer.MIN_VALUE;
+		data.activeEvent.targetY = -64;
+		data.activeEvent.targetZ = Integer.MAX_VALUE;
+		data.activeEvent.createdAt = Long.MAX_VALUE;
+		data.history.add(record(null, Integer.MIN_VALUE, Integer.MAX_VALUE, -1, null, true), HISTORY_RETENTION);
+
+		TomorrowYouState.PlayerTimelineData decoded = StateCodec.decode(StateCodec.encode(data), HISTORY_RETENTION);
+
+		assertEquals(Long.MIN_VALUE, decoded.lastTriggerGameTime);
+		assertEvent(data.activeEvent, decoded.activeEvent);
+		assertRecords(new ArrayList<>(data.history.recent()), new ArrayList<>(decoded.history.recent()));
+	}
+
+	@Test
+	void readsVersionOneShard() throws IOException {
+		ShardWriter shard = new ShardWriter(1, "minecraft:overworld", "first_visit_done", "minecraft:the_nether", "tomorrow_compass");
+		StateCodec.writeVarLong(shard.body, 42L);
+		StateCodec.writeVarInt(shard.body, 6);
+		shard.signedLong(-5L);
+		shard.body.writeBoolean(false);
+		// Six records against a retention of four: the two oldest are folded while reading.
+		StateCodec.writeVarInt(shard.body, 6);
+		for (int index = 0; index < 6; index++) {
+			StateCodec.writeVarInt(shard.body, index % 2 == 0 ? 1 : 3);
+			shard.signedInt(-100 - index);
+			shard.signedInt(70);
+			shard.signedInt(index);
+			StateCodec.writeVarLong(shard.body, index);
+			StateCodec.writeVarLong(shard.body, index + 1L);
+			StateCodec.writeVarInt(shard.body, index % 2 == 0 ? 2 : 4);
+			shard.body.writeBoolean(index % 2 == 1);
+		}
+
+		TomorrowYouState.PlayerTimelineData decoded = StateCodec.decode(shard.toByteArray(), HISTORY_RETENTION);
+
+		assertEquals(42L, decoded.journalSeq);
+		assertEquals(6, decoded.completedEncounters);
+		assertEquals(-5L, decoded.lastTriggerGameTime);
+		assertNull(decoded.activeEvent);
+		assertEquals(2, decoded.history.foldedEncounters);
+		assertEquals(1, decoded.history.foldedCompasses);
+		assertEquals(Map.of("first_visit_done", 1, "tomorrow_compass", 1), decoded.history.foldedOutcomes);
+		assertEquals(Map.of("minecraft:overworld", 1, "minecraft:the_nether", 1), decoded.history.foldedDimensions);
+		List<TomorrowYouState.EncounterRecord> recent = new ArrayList<>(decoded.history.recent());
+		assertEquals(4, recent.size());
+		assertEquals(-102, recent.get(0).x);
+		assertEquals("minecraft:overworld", recent.get(0).worldKey);
+		assertEquals(-105, recent.get(3).x);
+		assertEquals("tomorrow_compass", recent.get(3).outcome);
+		assertTrue(recent.get(3).gotCompass);
+
+		// Re-encoding upgrades the shard to the current version without losing anything.
+		TomorrowYouState.PlayerTimelineData upgraded = StateCodec.decode(StateCodec.encode(decoded), HISTORY_RETENTION);
+		assertEquals(decoded.history.foldedOutcomes, upgraded.history.foldedOutcomes);
+		assertRecords(recent, new ArrayList<>(upgraded.history.recent()));
+	}
+
+	@Test
+	void rejectsFoldedCountWithoutKey() throws IOException {
+		ShardWriter shard = new ShardWriter(2);
+		StateCodec.writeVarLong(shard.body, 1L);
+		StateCodec.writeVarInt(shard.body, 1);
+		shard.signedLong(0L);
+		shard.body.writeBoolean(false);
+		StateCodec.writeVarInt(shard.body, 1);
+		StateCodec.writeVarInt(shard.body, 0);
+		StateCodec.writeVarInt(shard.body, 1);
+		StateCodec.writeVarInt(shard.body, 0);
+		StateCodec.writeVarInt(shard.body, 1);
+		StateCodec.writeVarInt(shard.body, 0);
+		StateCodec.writeVarInt(shard.body, 0);
+
+		assertThrows(IOException.class, () -> StateCodec.decode(shard.toByteArray(), HISTORY_RETENTION));
+	}
+
+	@Test
+	void rejectsUnknownMagicAndVersion() throws IOException {
+		assertFalse(StateCodec.isBinary("{\"journalSeq\":1}".getBytes(StandardCharsets.UTF_8)));
+		assertThrows(IOException.class, () -> StateCodec.decode(new byte[] {0, 0, 0, 0, 1}, HISTORY_RETENTION));
+		ShardWriter future = new ShardWriter(StateCodec.VERSION + 1);
+		assertThrows(IOException.class, () -> StateCodec.decode(future.toByteArray(), HISTORY_RETENTION));
+	}
+
+	@Test
+	void readsLegacyJsonState() throws IOException {
+		Map<UUID, TomorrowYouState.PlayerTimelineData> players;
+		try (InputStream stream = StateCodecTest.class.getResourceAsStream("legacy-state.json")) {
+			assertNotNull(stream);
+			try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+				players = TomorrowYouState.readLegacyState(reader, HISTORY_RETENTION);
+			}
+		}
+
+		// The entry with a malformed player id is skipped.
+		assertEquals(2, players.size());
+		TomorrowYouState.PlayerTimelineData veteran = players.get(UUID.fromString("3f1c2a9e-5b7d-4e21-9a0f-6c8d2b4e1a77"));
+		assertNotNull(veteran);
+		assertEquals(57L, veteran.journalSeq);
+		assertEquals(5, veteran.completedEncounters);
+		assertEquals(240_000L, veteran.lastTriggerGameTime);
+		assertNull(veteran.activeEvent);
+		assertEquals(1, veteran.history.foldedEncounters);
+		assertEquals(Map.of("player_died", 1), veteran.history.foldedOutcomes);
+		List<TomorrowYouState.EncounterRecord> recent = new ArrayList<>(veteran.history.recent());
+		assertEquals(4, recent.size());
+		assertEquals(-1200, recent.get(0).x);
+		assertEquals("tomorrow_compass", recent.get(3).outcome);
+		assertTrue(recent.get(3).gotCompass);
+
+		TomorrowYouState.PlayerTimelineData newcomer = players.get(UUID.fromString("9b0e4d61-2c3a-4f58-8e17-d5a6c0f3b292"));
+		assertNotNull(newcomer);
+		assertEquals(0, newcomer.completedEncounters);
+		assertNotNull(newcomer.activeEvent);
+		assertEquals("minecraft:the_nether", newcomer.activeEvent.worldKey);
+		assertEquals(-48, newcomer.activeEvent.targetX);
+		assertEquals(List.of("Булыжник x12", "Факел x3"), newcomer.activeEvent.frozenInventory);
+
+		// What was migrated survives the binary format unchanged.
+		TomorrowYouState.PlayerTimelineData reloaded = StateCodec.decode(StateCodec.encode(newcomer), HISTORY_RETENTION);
+		assertEvent(newcomer.activeEvent, reloaded.activeEvent);
+	}
+
+	private static TomorrowYouState.ActiveEvent event() {
+		TomorrowYouState.ActiveEvent event = new TomorrowYouState.ActiveEvent();
+		event.worldKey = "minecraft:the_nether";
+		event.targetX = -1024;
+		event.targetY = -12;
+		event.targetZ = 77;
+		event.createdAt = 120_000L;
+		event.createdDay = 5L;
+		event.firstVisitDone = true;
+		event.resolvedOutcome = "first_visit_done";
+		event.echoEntityUuid = new UUID(-1L, 42L);
+		event.playerNameAtCreation = "Странник";
+		event.mainHandItem = "minecraft:iron_sword";
+		event.mainHandCount = 1;
+		event.offHandItem = null;
+		event.offHandCount = 0;
+		event.headArmor = "minecraft:iron_helmet";
+		event.frozenInventory.add("Факел x16");
+		event.frozenInventory.add("Факел x16");
+		event.frozenInventory.add("Хлеб x3");
+		return event;
+	}
+
+	private static TomorrowYouState.EncounterRecord record(String worldKey, int x, int y, int z, String outcome, boolean gotCompass) {
+		TomorrowYouState.EncounterRecord record = new TomorrowYouState.EncounterRecord();
+		record.worldKey = worldKey;
+		record.x = x;
+		record.y = y;
+		record.z = z;
+		record.createdDay = Math.abs(z);
+		record.resolvedDay = Math.abs(z) + 1L;
+		record.outcome = outcome;
+		record.gotCompass = gotCompass;
+		return record;
+	}
+
+	private static void assertEvent(TomorrowYouState.ActiveEvent expected, TomorrowYouState.ActiveEvent actual) {
+		assertNotNull(actual);
+		assertEquals(expected.worldKey, actual.worldKey);
+		assertEquals(expected.targetX, actual.targetX);
+		assertEquals(expected.targetY, actual.targetY);
+		assertEquals(expected.targetZ, actual.targetZ);
+		assertEquals(expected.createdAt, actual.createdAt);
+		assertEquals(expected.createdDay, actual.createdDay);
+		assertEquals(expected.firstVisitDone, actual.firstVisitDone);
+		assertEquals(expected.tomorrowBranchResolved, actual.tomorrowBranchResolved);
+		assertEquals(expected.resolvedOutcome, actual.resolvedOutcome);
+		assertEquals(expected.echoEntityUuid, actual.echoEntityUuid);
+		assertEquals(expected.playerNameAtCreation, actual.playerNameAtCreation);
+		assertEquals(expected.mainHandItem, actual.mainHandItem);
+		assertEquals(expected.mainHandCount, actual.mainHandCount);
+		assertEquals(expected.offHandItem, actual.offHandItem);
+		assertEquals(expected.offHandCount, actual.offHandCount);
+		assertEquals(expected.headArmor, actual.headArmor);
+		assertEquals(expected.chestArmor, actual.chestArmor);
+		assertEquals(expected.legsArmor, actual.legsArmor);
+		assertEquals(expected.feetArmor, actual.feetArmor);
+		assertEquals(expected.frozenInventory, actual.frozenInventory);
+	}
+
+	private static void assertRecords(List<TomorrowYouState.EncounterRecord> expected, List<TomorrowYouState.EncounterRecord> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int index = 0; index < expected.size(); index++) {
+			TomorrowYouState.EncounterRecord want = expected.get(index);
+			TomorrowYouState.EncounterRecord got = actual.get(index);
+			assertArrayEquals(
+				new Object[] {want.worldKey, want.x, want.y, want.z, want.createdDay, want.resolvedDay, want.outcome, want.gotCompass},
+				new Object[] {got.worldKey, got.x, got.y, got.z, got.createdDay, got.resolvedDay, got.outcome, got.gotCompass}
+			);
+		}
+	}
+
+	/**
+	 * Writes a shard by hand: header and string table up front, then whatever the test puts into {@link #body}.
+	 */
+	private static final class ShardWriter {
+		private final int version;
+		private final String[] strings;
+		private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		ShardWriter(int version, String... strings) {
+			this.version = version;
+			this.strings = strings;
+		}
+
+		void signedInt(int value) throws IOException {
+			StateCodec.writeVarInt(body, (value << 1) ^ (value >> 31));
+		}
+
+		void signedLong(long value) throws IOException {
+			StateCodec.writeVarLong(body, (value << 1) ^ (value >> 63));
+		}
+
+		byte[] toByteArray() throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(out);
+			output.writeInt(MAGIC);
+			StateCodec.writeVarInt(output, version);
+			StateCodec.writeVarInt(output, strings.length);
+			for (String value : strings) {
+				byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+				StateCodec.writeVarInt(output, utf8.length);
+				output.write(utf8);
+			}
+			body.flush();
+			bodyBytes.writeTo(output);
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.xetpy.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TomorrowYouStateJournalTest {
+	private static final int HISTORY_RETENTION = 16;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsWrittenAfterRestartSurviveACrash() throws Exception {
+		UUID playerId = UUID.randomUUID();
+
+		TomorrowYouState first = TomorrowYouState.load(directory, HISTORY_RETENTION);
+		load(first, playerId);
+		for (int encounter = 0; encounter < 3; encounter++) {
+			first.startEvent(playerId, event(), encounter);
+			first.finalizeEncounter(playerId, encounter());
+		}
+		first.flush();
+
+		// Restart, mutate, then stop without compacting: the change exists only in the journal.
+		TomorrowYouState second = TomorrowYouState.load(directory, HISTORY_RETENTION);
+		TomorrowYouState.PlayerTimelineData beforeCrash = load(second, playerId);
+		assertEquals(3, beforeCrash.completedEncounters);
+		second.startEvent(playerId, event(), 100L);
+		second.awaitWrites();
+		long crashedSeq = beforeCrash.journalSeq;
+
+		TomorrowYouState third = TomorrowYouState.load(directory, HISTORY_RETENTION);
+		TomorrowYouState.PlayerTimelineData replayed = load(third, playerId);
+		assertEquals(3, replayed.completedEncounters);
+		assertNotNull(replayed.activeEvent);
+		assertEquals(100L, replayed.lastTriggerGameTime);
+		assertEquals(crashedSeq, replayed.journalSeq);
+	}
+
+	@Test
+	void sequenceContinuesAcrossRestarts() throws Exception {
+		UUID firstPlayer = UUID.randomUUID();
+		UUID secondPlayer = UUID.randomUUID();
+
+		TomorrowYouState first = TomorrowYouState.load(directory, HISTORY_RETENTION);
+		load(first, firstPlayer);
+		first.startEvent(firstPlayer, event(), 1L);
+		first.finalizeEncounter(firstPlayer, encounter());
+		long highWater = first.getPlayerData(firstPlayer).journalSeq;
+		first.flush();
+
+		TomorrowYouState second = TomorrowYouState.load(directory, HISTORY_RETENTION);
+		load(second, secondPlayer);
+		second.startEvent(secondPlayer, event(), 2L);
+		assertTrue(second.getPlayerData(secondPlayer).journalSeq > highWater);
+	}
+
+	private static TomorrowYouState.PlayerTimelineData load(TomorrowYouState state, UUID playerId) throws Exception {
+		CompletableFuture<TomorrowYouState.PlayerTimelineData> loaded = new CompletableFuture<>();
+		state.requestLoad(playerId, Runnable::run, loaded::complete);
+		return loaded.get(10L, TimeUnit.SECONDS);
+	}
+
+	private static TomorrowYouState.ActiveEvent event() {
+		TomorrowYouState.ActiveEvent event = new TomorrowYouState.ActiveEvent();
+		event.worldKey = "minecraft:overworld";
+		event.targetX = 120;
+		event.targetY = 64;
+		event.targetZ = -40;
+		event.playerNameAtCreation = "Player";
+		return event;
+	}
+
+	private static TomorrowYouState.EncounterRecord encounter() {
+		TomorrowYouState.EncounterRecord record = new TomorrowYouState.EncounterRecord();
+		record.worldKey = "minecraft:overworld";
+		record.outcome = "first_visit_done";
+		return record;
+	}
+}